@@ -0,0 +1,57 @@
+package benchmarks;
+
+import helpers.Config;
+
+import java.util.ArrayList;
+
+import neuralNetwork.Activation;
+import neuralNetwork.NeuralNet;
+import neuralNetwork.Stage;
+
+public class ActivationBenchmark {
+	/**
+	 * Error bounds and speed of the activation implementations: max. error
+	 * relative to the output range on a fine grid for all of them, time per
+	 * call and time per network evaluation with evolved genomes for the one
+	 * of --activation=..., so the timed call sites do not see several
+	 * implementations
+	 */
+	public static void main(String[] args) {
+		Config config = Config.load(args);
+		if (config.seed == 0)
+			config.seed = 1;
+		System.out.println("activation    max error");
+		for (Activation a : new Activation[] { Activation.exact, Activation.lut, Activation.rational }) {
+			double maxError = 0;
+			for (double x = -64; x <= 64; x += 1 / 1024d)
+				maxError = Math.max(maxError, Math.abs(a.apply(x) - Stage.sigmoid(x)) / Stage.signalMultiplier);
+			System.out.printf("%-12s  %9.2e%n", a.getMethodName(), maxError);
+		}
+
+		Activation a = Activation.byName(config.activation);
+		double xs[] = new double[1 << 20];
+		java.util.Random r = new java.util.Random(3);
+		for (int i = 0; i < xs.length; i++)
+			xs[i] = r.nextGaussian() * 16;
+		ArrayList<NeuralNet> nets = Genomes.evolve(config, 20000);
+		double inputs[][] = Genomes.inputs(config, 1024, 2);
+		for (NeuralNet n : nets)
+			n.setActivation(a);
+		double perCall = 0, perEval = 0;
+		for (int round = 0; round < 5; round++) {
+			perCall = time(a, xs);
+			perEval = NetworkBenchmark.time(nets, inputs);
+		}
+		System.out.printf("%n%s: %.2f ns/call, %.1f ns/eval%n", a.getMethodName(), perCall, perEval);
+	}
+
+	static double time(Activation a, double xs[]) {
+		long start = System.nanoTime();
+		double sum = 0;
+		for (int rep = 0; rep < 10; rep++)
+			for (double x : xs)
+				sum += a.apply(x);
+		NetworkBenchmark.sink += sum;
+		return (System.nanoTime() - start) / (10d * xs.length);
+	}
+}
@@ -0,0 +1,261 @@
+package benchmarks;
+
+import gameEngine.Simulation;
+import gameEngine.Snake;
+import gameEngine.World;
+import genetics.DNA;
+import genetics.GenomeArena;
+import helpers.Config;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+
+import neuralNetwork.NeuralNet;
+
+public class AllocationBudget {
+	/**
+	 * Allocation and GC regression check of the simulation loop: measures
+	 * the bytes allocated per call of the hot paths after a warmup, and the
+	 * collections and longest GC pause of a run, then compares them with the
+	 * budgets checked in as allocation-budgets.properties. Exits with 1 when
+	 * a budget is exceeded. Runs single threaded, so that all allocations
+	 * happen on the measuring thread. Also checks that released genomes
+	 * fail clearly when their arena slot has been reused.
+	 *
+	 * Usage: AllocationBudget [budget file] [update] [--key=value ...]
+	 * "update" writes the measured values plus headroom as new budgets.
+	 * Collections depend on the heap size, run with -Xms256m -Xmx256m like
+	 * the checked in budgets.
+	 */
+	public static final String defaultFile = "allocation-budgets.properties";
+	public static final double headroom = 1.5;
+	public static final double minimumPauseBudget = 50; // ms, pauses are noisy
+
+	static ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws IOException {
+		String file = defaultFile;
+		boolean update = false;
+		ArrayList<String> flags = new ArrayList<String>();
+		for (String a : args) {
+			if (a.startsWith("--"))
+				flags.add(a);
+			else if (a.equals("update"))
+				update = true;
+			else
+				file = a;
+		}
+		String flagArray[] = flags.toArray(new String[0]);
+
+		long collections[] = new long[1];
+		double longestPause[] = new double[1];
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			((NotificationEmitter) gc).addNotificationListener((n, handback) -> {
+				if (!n.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+					return;
+				GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+				synchronized (collections) {
+					collections[0]++;
+					longestPause[0] = Math.max(longestPause[0], info.getGcInfo().getDuration());
+				}
+			}, null, null);
+		}
+
+		LinkedHashMap<String, Double> measured = new LinkedHashMap<String, Double>();
+		measured.put("tick", perTick(config(flagArray), 20000));
+		measured.put("tick.noReplays", perTick(config(flagArray, "--recordReplays=false"), 20000));
+		measured.put("tick.arena", perTick(config(flagArray, "--recordReplays=false", "--arena=true", "--numSnakes=100", "--worldWidth=4000",
+				"--worldHeight=3000", "--numNibbles=40", "--maxNibbles=80"), 2000));
+		measured.put("snake.act", perSnakeTick(config(flagArray, "--recordReplays=false")));
+		measured.put("world.update", perWorldUpdate(config(flagArray)));
+		measured.put("birth", perBirth(config(flagArray, "--recordReplays=false")));
+		System.gc(); // not counted
+		synchronized (collections) {
+			collections[0] = 0;
+			longestPause[0] = 0;
+		}
+		perTick(config(flagArray), 50000);
+		try {
+			Thread.sleep(200); // notifications are delivered asynchronously
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (collections) {
+			measured.put("gc.collections", (double) collections[0]);
+			measured.put("gc.longestPauseMs", longestPause[0]);
+		}
+
+		if (update) {
+			try (PrintWriter out = new PrintWriter(file, StandardCharsets.ISO_8859_1)) {
+				out.println("# Budgets of benchmarks.AllocationBudget, measured values times " + headroom + " with -Xms256m -Xmx256m:");
+				out.println("# bytes per call, then collections and longest GC pause in ms of 50000 ticks");
+				for (Map.Entry<String, Double> e : measured.entrySet()) {
+					double budget = Math.ceil(Math.max(1, e.getValue()) * headroom);
+					if (e.getKey().equals("gc.longestPauseMs"))
+						budget = Math.max(budget, minimumPauseBudget);
+					out.println(e.getKey() + "=" + (long) budget);
+				}
+			}
+			System.out.println("Budgets written to " + file);
+		}
+		Properties budgets = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			budgets.load(in);
+		}
+		boolean failed = false;
+		System.out.println("case                 measured     budget");
+		for (Map.Entry<String, Double> e : measured.entrySet()) {
+			String b = budgets.getProperty(e.getKey());
+			boolean over = b != null && e.getValue() > Double.parseDouble(b);
+			failed |= over;
+			System.out.printf("%-18s %10.1f %10s  %s%n", e.getKey(), e.getValue(), b != null ? b : "-", b == null ? "no budget" : over ? "OVER BUDGET" : "ok");
+		}
+		failed |= !checkRelease();
+		System.exit(failed ? 1 : 0);
+	}
+
+	/**
+	 * Releases genomes with and without a copy and reuses the slot: the kept
+	 * one must still have its bytes, the other one and a network bound to it
+	 * must throw IllegalStateException instead of reading the new genome
+	 */
+	static boolean checkRelease() {
+		Random random = new Random(1);
+		int sizes[] = new int[] { 4, 3, 2 };
+		int length = NeuralNet.calcNumberOfCoeffs(sizes, false);
+		GenomeArena arena = new GenomeArena(length, 1);
+		DNA kept = new DNA(true, length, random);
+		byte keptBytes[] = kept.toArray();
+		arena.adopt(kept);
+		arena.release(kept, true);
+		DNA dropped = new DNA(true, length, random);
+		arena.adopt(dropped);
+		NeuralNet net = new NeuralNet(sizes);
+		net.bind(dropped.data);
+		arena.release(dropped, false);
+		net.detach();
+		DNA next = new DNA(true, length, random);
+		boolean reused = arena.adopt(next) && next.slot == 0;
+		boolean ok = reused && Arrays.equals(kept.toArray(), keptBytes) && throwsReleased(() -> dropped.hash())
+				&& throwsReleased(() -> net.calc(new double[4]));
+		System.out.printf("%-18s %21s  %s%n", "release", "", ok ? "ok" : "FAILED");
+		return ok;
+	}
+
+	private static boolean throwsReleased(Runnable r) {
+		try {
+			r.run();
+			return false;
+		} catch (IllegalStateException e) {
+			return e.getMessage().equals("genome released");
+		}
+	}
+
+	static Config config(String flags[], String... overrides) {
+		String all[] = new String[flags.length + overrides.length];
+		System.arraycopy(overrides, 0, all, 0, overrides.length);
+		System.arraycopy(flags, 0, all, overrides.length, flags.length);
+		Config config = Config.load(all);
+		config.threads = 1;
+		if (config.seed == 0)
+			config.seed = 1;
+		return config;
+	}
+
+	/**
+	 * Simulation.step, after as many ticks of warmup
+	 */
+	static double perTick(Config config, int ticks) {
+		Simulation sim = new Simulation(config);
+		for (int t = 0; t < ticks; t++)
+			sim.step(config.worldWidth, config.worldHeight);
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int t = 0; t < ticks; t++)
+			sim.step(config.worldWidth, config.worldHeight);
+		double bytes = (threads.getCurrentThreadAllocatedBytes() - before) / (double) ticks;
+		sim.close();
+		return bytes;
+	}
+
+	/**
+	 * Snake.act and Snake.commit of one evolved snake in a private world
+	 */
+	static double perSnakeTick(Config config) {
+		Simulation sim = new Simulation(config);
+		for (int t = 0; t < 10000; t++)
+			sim.step(config.worldWidth, config.worldHeight);
+		World world = new World(config);
+		world.random.setSeed(config.seed);
+		world.width = config.worldWidth;
+		world.height = config.worldHeight;
+		world.newNibble(config.numNibbles);
+		long bytes = 0, ticks = 0;
+		for (int round = 0; round < 2; round++) { // the second round counts
+			bytes = 0;
+			ticks = 0;
+			for (Snake parent : sim.snakes) {
+				Snake s = new Snake(parent.dna.copy(), world);
+				long before = threads.getCurrentThreadAllocatedBytes();
+				for (int t = 0; t < 2000 && !s.isDead; t++, ticks++) {
+					s.act(world);
+					s.commit(world);
+					world.replaceEatenNibbles();
+				}
+				bytes += threads.getCurrentThreadAllocatedBytes() - before;
+			}
+		}
+		sim.close();
+		return bytes / (double) Math.max(1, ticks);
+	}
+
+	static double perWorldUpdate(Config config) {
+		World world = new World(config);
+		world.width = config.worldWidth;
+		world.height = config.worldHeight;
+		world.newNibble(config.numNibbles);
+		for (int i = 0; i < 100000; i++)
+			world.update(world.width, world.height);
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 100000; i++)
+			world.update(world.width, world.height);
+		return (threads.getCurrentThreadAllocatedBytes() - before) / 100000.;
+	}
+
+	/**
+	 * Simulation.newSnake: selection, reproduction and the new snake
+	 */
+	static double perBirth(Config config) {
+		Simulation sim = new Simulation(config);
+		for (int t = 0; t < 10000; t++)
+			sim.step(config.worldWidth, config.worldHeight);
+		int births = 40;
+		double bytes = 0;
+		for (int round = 0; round < 2; round++) {
+			long before = threads.getCurrentThreadAllocatedBytes();
+			for (int i = 0; i < births; i++) {
+				sim.newSnake();
+				sim.snakes.removeLast();
+			}
+			bytes = (threads.getCurrentThreadAllocatedBytes() - before) / (double) births;
+		}
+		sim.close();
+		return bytes;
+	}
+}
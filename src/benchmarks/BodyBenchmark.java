@@ -0,0 +1,135 @@
+package benchmarks;
+
+import gameEngine.GameLoop;
+import gameEngine.PhysicalCircle;
+import gameEngine.Snake;
+import gameEngine.World;
+import helpers.Config;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class BodyBenchmark {
+	/**
+	 * Follow step of the body: the former atan2, cos and sin version against
+	 * the normalized difference vector of PhysicalCircle, static and with
+	 * inertia. Prints the time per segment, the largest position difference
+	 * between both after a long random walk, and the time of Snake.move for
+	 * some body lengths.
+	 */
+	public static void main(String[] args) {
+		Config config = Config.load(args);
+		int segments = 1000;
+		int ticks = 2000;
+		for (int round = 0; round < 3; round++) {
+			System.out.printf("static:  trig %.2f ns/segment, normalized %.2f ns/segment%n", follow(segments, ticks, false, true),
+					follow(segments, ticks, false, false));
+			System.out.printf("inertia: trig %.2f ns/segment, normalized %.2f ns/segment%n", follow(segments, ticks, true, true),
+					follow(segments, ticks, true, false));
+		}
+		System.out.printf("max difference after %d ticks: static %.3g, inertia %.3g%n", ticks, difference(segments, ticks, false),
+				difference(segments, ticks, true));
+		for (int round = 0; round < 2; round++)
+			for (int length : new int[] { 10, 50, 150, 400 })
+				System.out.printf("Snake.move, %d segments: %.2f us/tick%n", length, move(config, length, 5000));
+	}
+
+	static double sink = 0;
+
+	static ArrayList<PhysicalCircle> chain(int segments) {
+		ArrayList<PhysicalCircle> body = new ArrayList<PhysicalCircle>();
+		for (int i = 0; i < segments; i++)
+			body.add(new PhysicalCircle(5000 - 40 * i, 5000, GameLoop.globalCircleRadius));
+		return body;
+	}
+
+	/**
+	 * Random walk of the head, the rest of the chain follows
+	 */
+	static void walk(ArrayList<PhysicalCircle> body, Random random, boolean inertia, boolean trig) {
+		PhysicalCircle head = body.get(0);
+		head.x += 5 * (random.nextDouble() - .3);
+		head.y += 5 * (random.nextDouble() - .5);
+		for (int i = 1; i < body.size(); i++) {
+			PhysicalCircle c = body.get(i);
+			PhysicalCircle o = body.get(i - 1);
+			if (trig && inertia)
+				followBouncyTrig(c, o);
+			else if (trig)
+				followStaticTrig(c, o);
+			else if (inertia)
+				c.followBouncy(o);
+			else
+				c.followStatic(o);
+			c.updatePosition();
+		}
+	}
+
+	static double follow(int segments, int ticks, boolean inertia, boolean trig) {
+		ArrayList<PhysicalCircle> body = chain(segments);
+		Random random = new Random(1);
+		long start = System.nanoTime();
+		for (int t = 0; t < ticks; t++)
+			walk(body, random, inertia, trig);
+		sink += body.get(segments - 1).x;
+		return (System.nanoTime() - start) / (double) (ticks * (segments - 1));
+	}
+
+	static double difference(int segments, int ticks, boolean inertia) {
+		ArrayList<PhysicalCircle> a = chain(segments), b = chain(segments);
+		Random ra = new Random(1), rb = new Random(1);
+		double max = 0;
+		for (int t = 0; t < ticks; t++) {
+			walk(a, ra, inertia, true);
+			walk(b, rb, inertia, false);
+		}
+		for (int i = 0; i < segments; i++)
+			max = Math.max(max, Math.hypot(a.get(i).x - b.get(i).x, a.get(i).y - b.get(i).y));
+		return max;
+	}
+
+	static double move(Config config, int length, int ticks) {
+		config.recordReplays = false;
+		World world = new World(config);
+		world.width = 20000;
+		world.height = 20000;
+		world.random.setSeed(1);
+		Snake s = new Snake(null, world);
+		s.grow(length - 1, 0);
+		s.angle = 0;
+		for (int i = 0; i < s.snakeSegments.size(); i++) {
+			s.snakeSegments.get(i).x = 10000 - 40 * i;
+			s.snakeSegments.get(i).y = 10000;
+		}
+		Random random = new Random(1);
+		long start = System.nanoTime();
+		int t = 0;
+		while (t < ticks && !s.isDead) {
+			s.move(world, (2 * random.nextDouble() - 1) * Snake.maximumAngularSpeed);
+			t++;
+		}
+		return (System.nanoTime() - start) / 1e3 / t;
+	}
+
+	/**
+	 * Former PhysicalCircle.followStatic
+	 */
+	static void followStaticTrig(PhysicalCircle c, PhysicalCircle o) {
+		double s = c.rad + o.rad;
+		double a = Math.atan2(c.y - o.y, c.x - o.x);
+		c.x = (o.x + s * Math.cos(a));
+		c.y = (o.y + s * Math.sin(a));
+	}
+
+	/**
+	 * Former PhysicalCircle.followBouncy
+	 */
+	static void followBouncyTrig(PhysicalCircle c, PhysicalCircle o) {
+		double s = c.rad + o.rad;
+		double a = Math.atan2(c.y - o.y, c.x - o.x);
+		c.vx += (o.x + s * Math.cos(a) - c.x) / s / 32;
+		c.vy += (o.y + s * Math.sin(a) - c.y) / s / 32;
+		c.x += (o.x + s * Math.cos(a) - c.x) / s * 24 + o.vx * .24;
+		c.y += (o.y + s * Math.sin(a) - c.y) / s * 24 + o.vy * .24;
+	}
+}
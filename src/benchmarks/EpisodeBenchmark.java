@@ -0,0 +1,71 @@
+package benchmarks;
+
+import gameEngine.EpisodeExecutor;
+import gameEngine.Simulation;
+import helpers.Config;
+
+import java.util.ArrayList;
+
+public class EpisodeBenchmark {
+	/**
+	 * Many short episodes on the platform fork/join pool and on virtual
+	 * threads (Java 21 and later): episodes per second, then how long it
+	 * takes to close a scope of long episodes after cancelling it, and
+	 * whether deadlines stop episodes that would never finish.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Config config = Config.load(args);
+		config.threads = 1; // one thread per episode
+		config.recordReplays = false;
+		if (config.seed == 0)
+			config.seed = 1;
+		ArrayList<String> modes = new ArrayList<String>();
+		modes.add(EpisodeExecutor.PLATFORM);
+		if (EpisodeExecutor.hasVirtualThreads())
+			modes.add(EpisodeExecutor.VIRTUAL);
+		else
+			System.out.println("no virtual threads in this runtime (Java " + Runtime.version().feature() + "), platform only");
+		for (int round = 0; round < 2; round++) {
+			for (String mode : modes) {
+				for (int episodes : new int[] { 100, 1000 }) {
+					EpisodeExecutor executor = new EpisodeExecutor(mode, 0);
+					long start = System.nanoTime();
+					try (EpisodeExecutor.Scope scope = executor.open(0)) {
+						for (int i = 0; i < episodes; i++)
+							scope.fork(() -> new Simulation(config), sim -> sim.ticks >= 10, null);
+						scope.join();
+					}
+					double seconds = (System.nanoTime() - start) / 1e9;
+					executor.close();
+					System.out.printf("%-8s %5d episodes of 10 ticks: %8.0f episodes/s%n", mode, episodes, episodes / seconds);
+				}
+			}
+		}
+		for (String mode : modes) {
+			EpisodeExecutor executor = new EpisodeExecutor(mode, 0);
+			EpisodeExecutor.Scope scope = executor.open(0);
+			for (int i = 0; i < 500; i++)
+				scope.fork(() -> new Simulation(config), sim -> false, null);
+			Thread.sleep(500);
+			long start = System.nanoTime();
+			scope.close();
+			System.out.printf("%-8s cancel and close 500 running episodes: %.1f ms, %d cancelled%n", mode, (System.nanoTime() - start) / 1e6,
+					count(scope, EpisodeExecutor.Episode.CANCELLED));
+			scope = executor.open(50000000);
+			for (int i = 0; i < 100; i++)
+				scope.fork(() -> new Simulation(config), sim -> false, null);
+			scope.join();
+			scope.close();
+			System.out.printf("%-8s deadline 50 ms, 100 endless episodes: %d timed out%n", mode, count(scope, EpisodeExecutor.Episode.TIMED_OUT));
+			executor.close();
+		}
+	}
+
+	static int count(EpisodeExecutor.Scope scope, int state) {
+		int n = 0;
+		for (EpisodeExecutor.Episode e : scope.getEpisodes())
+			if (e.state == state)
+				n++;
+		return n;
+	}
+}
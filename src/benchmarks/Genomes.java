@@ -0,0 +1,51 @@
+package benchmarks;
+
+import gameEngine.Simulation;
+import gameEngine.Snake;
+import genetics.DNA;
+import helpers.Config;
+
+import java.util.ArrayList;
+
+import neuralNetwork.NeuralNet;
+
+public class Genomes {
+	/**
+	 * Evolved genomes for the benchmarks: runs a seeded headless simulation
+	 * and collects the genomes of the living snakes
+	 *
+	 * @param config
+	 *            simulation parameters
+	 * @param ticks
+	 *            simulation ticks before collecting
+	 * @return networks loaded with the evolved genomes
+	 */
+	public static ArrayList<NeuralNet> evolve(Config config, int ticks) {
+		Simulation sim = new Simulation(config);
+		for (int t = 0; t < ticks; t++)
+			sim.step(config.worldWidth, config.worldHeight);
+		ArrayList<NeuralNet> nets = new ArrayList<NeuralNet>();
+		for (Snake s : sim.snakes)
+			nets.add(load(config, s.dna));
+		return nets;
+	}
+
+	public static NeuralNet load(Config config, DNA dna) {
+		NeuralNet net = new NeuralNet(config.getStageSizes());
+		net.loadCoeffs(dna.toArray());
+		return net;
+	}
+
+	/**
+	 * Inputs like the ones the snakes see: a few cells with a seen thing
+	 */
+	public static double[][] inputs(Config config, int n, long seed) {
+		java.util.Random r = new java.util.Random(seed);
+		double in[][] = new double[n][config.getFirstStageSize()];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < in[i].length; j++)
+				if (r.nextInt(3) == 0)
+					in[i][j] = neuralNetwork.Stage.signalMultiplier * r.nextDouble();
+		return in;
+	}
+}
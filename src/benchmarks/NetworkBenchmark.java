@@ -0,0 +1,63 @@
+package benchmarks;
+
+import helpers.Config;
+
+import java.util.ArrayList;
+
+import neuralNetwork.NeuralNet;
+
+public class NetworkBenchmark {
+	/**
+	 * Interpreted versus compiled networks on evolved genomes. Checks that
+	 * both give identical outputs and prints the time per evaluation. Exits
+	 * with 1 when the compiled networks are slower in the last round, e.g.
+	 * because the JIT leaves their methods interpreted.
+	 */
+	public static void main(String[] args) {
+		Config config = Config.load(args);
+		if (config.seed == 0)
+			config.seed = 1;
+		ArrayList<NeuralNet> interpreted = Genomes.evolve(config, 20000);
+		ArrayList<NeuralNet> compiled = new ArrayList<NeuralNet>();
+		for (NeuralNet n : interpreted) {
+			NeuralNet c = PruningBenchmark.copy(config, n);
+			c.compile();
+			compiled.add(c);
+		}
+		double inputs[][] = Genomes.inputs(config, 1024, 2);
+		for (int i = 0; i < interpreted.size(); i++) {
+			for (double in[] : inputs) {
+				double a[] = interpreted.get(i).calc(in).clone();
+				double b[] = compiled.get(i).calc(in);
+				if (a[0] != b[0] || a[1] != b[1])
+					throw new IllegalStateException("Compiled network differs");
+			}
+		}
+		double slow = 0, fast = 0;
+		for (int round = 0; round < 5; round++) {
+			slow = time(interpreted, inputs);
+			fast = time(compiled, inputs);
+			System.out.printf("interpreted: %.1f ns/eval   compiled: %.1f ns/eval%n", slow, fast);
+		}
+		if (fast > slow) {
+			System.out.println("Compiled networks are slower than interpreted ones");
+			System.exit(1);
+		}
+	}
+
+	static double sink = 0;
+
+	static double time(ArrayList<NeuralNet> nets, double inputs[][]) {
+		int evals = 0;
+		long start = System.nanoTime();
+		for (int rep = 0; rep < 200; rep++) {
+			for (NeuralNet n : nets) {
+				for (double in[] : inputs) {
+					sink += n.calc(in)[0];
+					evals++;
+				}
+			}
+		}
+		return (System.nanoTime() - start) / (double) evals;
+	}
+}
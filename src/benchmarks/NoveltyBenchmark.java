@@ -0,0 +1,76 @@
+package benchmarks;
+
+import gameEngine.Snake;
+import genetics.NoveltyArchive;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class NoveltyBenchmark {
+	/**
+	 * Novelty queries against archives of growing size: the KD-tree against
+	 * comparing with every entry, single threaded and in parallel. Queries of
+	 * dead snakes compare the whole descriptor, the ones of living snakes only
+	 * the cells. Descriptors look like the ones of Snake.getBehavior(): a
+	 * short walk over neighboring cells, most ticks spent in one of them
+	 */
+	public static void main(String[] args) {
+		int k = 15;
+		int cells = Snake.behaviorCells * Snake.behaviorCells;
+		double queries[][] = descriptors(2000, 1);
+		System.out.println("archive  query   kd us  linear us  parallel kd us  mismatches");
+		for (int size : new int[] { 1000, 10000, 100000 }) {
+			NoveltyArchive archive = new NoveltyArchive(Snake.behaviorLength, size, k, 3);
+			for (double d[] : descriptors(size, 2))
+				archive.add(d);
+			archive.rebuild();
+			for (int length : new int[] { Snake.behaviorLength, cells }) {
+				int mismatches = 0;
+				for (double q[] : queries)
+					if (archive.novelty(q, length) != archive.noveltyLinear(q, length))
+						mismatches++;
+				double kd = 0, linear = 0, parallel = 0;
+				for (int rep = 0; rep < 3; rep++) { // the last repetition counts
+					long t0 = System.nanoTime();
+					for (double q[] : queries)
+						archive.novelty(q, length);
+					long t1 = System.nanoTime();
+					for (double q[] : queries)
+						archive.noveltyLinear(q, length);
+					long t2 = System.nanoTime();
+					IntStream.range(0, queries.length).parallel().forEach(i -> archive.novelty(queries[i], length));
+					long t3 = System.nanoTime();
+					kd = (t1 - t0) / 1e3 / queries.length;
+					linear = (t2 - t1) / 1e3 / queries.length;
+					parallel = (t3 - t2) / 1e3 / queries.length;
+				}
+				System.out.printf("%7d  %-6s %7.2f  %9.2f  %14.2f  %10d%n", size, length == cells ? "living" : "dead", kd, linear, parallel, mismatches);
+			}
+		}
+	}
+
+	static double[][] descriptors(int n, long seed) {
+		Random r = new Random(seed);
+		int side = Snake.behaviorCells;
+		double d[][] = new double[n][Snake.behaviorLength];
+		for (double b[] : d) {
+			int x = r.nextInt(side), y = r.nextInt(side);
+			int steps = r.nextInt(6);
+			double total = 0;
+			for (int s = 0; s <= steps; s++) {
+				double w = s == 0 ? 2 + r.nextDouble() * 4 : r.nextDouble();
+				b[y * side + x] += w;
+				total += w;
+				if (r.nextBoolean())
+					x = Math.max(0, Math.min(side - 1, x + (r.nextBoolean() ? 1 : -1)));
+				else
+					y = Math.max(0, Math.min(side - 1, y + (r.nextBoolean() ? 1 : -1)));
+			}
+			for (int c = 0; c < side * side; c++)
+				b[c] /= total;
+			double cause = r.nextDouble(); // wall, self and starvation like in evolved runs
+			b[side * side + (cause < .6 ? 0 : cause < .8 ? 1 : 2)] = 1;
+		}
+		return d;
+	}
+}
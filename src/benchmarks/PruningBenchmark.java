@@ -0,0 +1,79 @@
+package benchmarks;
+
+import gameEngine.Snake;
+import helpers.Config;
+
+import java.util.ArrayList;
+
+import neuralNetwork.NeuralNet;
+import neuralNetwork.Stage;
+
+public class PruningBenchmark {
+	/**
+	 * Magnitude pruning on evolved genomes: for each threshold the sparsity,
+	 * the time per evaluation dense and sparse, and how much the steering
+	 * output (as in Snake.brain) deviates from the unpruned network
+	 */
+	public static void main(String[] args) {
+		Config config = Config.load(args);
+		if (config.seed == 0)
+			config.seed = 1;
+		ArrayList<NeuralNet> original = Genomes.evolve(config, 20000);
+		double inputs[][] = Genomes.inputs(config, 1024, 2);
+		double reference[][] = new double[original.size()][inputs.length];
+		for (int n = 0; n < original.size(); n++)
+			for (int i = 0; i < inputs.length; i++)
+				reference[n][i] = steering(original.get(n).calc(inputs[i]));
+
+		System.out.println("threshold  sparsity  dense ns  sparse ns  mean |error|  max |error|  same direction");
+		for (int threshold = 0; threshold <= 96; threshold += 16) {
+			ArrayList<NeuralNet> dense = new ArrayList<NeuralNet>();
+			ArrayList<NeuralNet> sparse = new ArrayList<NeuralNet>();
+			double sparsity = 0;
+			for (NeuralNet o : original) {
+				NeuralNet d = copy(config, o);
+				d.prune(threshold, 2); // never sparse
+				NeuralNet s = copy(config, o);
+				s.prune(threshold, 0); // always sparse
+				for (int st = 1; st < d.stages.length; st++)
+					sparsity += d.stages[st].getSparsity() / (d.stages.length - 1) / original.size();
+				dense.add(d);
+				sparse.add(s);
+			}
+			double error = 0, maxError = 0;
+			int same = 0;
+			for (int n = 0; n < sparse.size(); n++) {
+				for (int i = 0; i < inputs.length; i++) {
+					double a = steering(sparse.get(n).calc(inputs[i]));
+					double e = Math.abs(a - reference[n][i]);
+					error += e;
+					maxError = Math.max(maxError, e);
+					if (Math.signum(a) == Math.signum(reference[n][i]))
+						same++;
+				}
+			}
+			int evals = sparse.size() * inputs.length;
+			NetworkBenchmark.time(dense, inputs); // warm up
+			NetworkBenchmark.time(sparse, inputs);
+			System.out.printf("%9d  %8.2f  %8.1f  %9.1f  %12.5f  %11.5f  %13.1f%%%n", threshold, sparsity, NetworkBenchmark.time(dense, inputs),
+					NetworkBenchmark.time(sparse, inputs), error / evals, maxError, 100. * same / evals);
+		}
+	}
+
+	static NeuralNet copy(Config config, NeuralNet n) {
+		NeuralNet c = new NeuralNet(config.getStageSizes());
+		for (int s = 1; s < n.stages.length; s++)
+			for (int i = 0; i < n.stages[s].rows; i++)
+				for (int j = 0; j < n.stages[s].columns; j++)
+					c.stages[s].coeffs[i][j] = n.stages[s].getCoeff(i, j);
+		return c;
+	}
+
+	/**
+	 * Angle increment like in Snake.brain()
+	 */
+	static double steering(double output[]) {
+		double angleIncrement = 10 * Snake.maximumAngularSpeed / Stage.signalMultiplier * (output[0] - output[1]);
+		return Math.max(-Snake.maximumAngularSpeed, Math.min(Snake.maximumAngularSpeed, angleIncrement));
+	}
+}
@@ -0,0 +1,104 @@
+package benchmarks;
+
+import gameEngine.ScenarioBank;
+import gameEngine.Simulation;
+import gameEngine.Snake;
+import gameEngine.World;
+import genetics.DNA;
+import helpers.Config;
+
+import java.util.ArrayList;
+
+public class ScenarioBenchmark {
+	/**
+	 * The scenario bank with evolved genomes: time to generate the bank,
+	 * setup of an episode (one tick long) in a reused world against a new
+	 * world per episode, and how much the fitness of one genome varies between random spawns in
+	 * a fresh world compared to the fixed scenarios
+	 */
+	public static void main(String[] args) {
+		Config config = Config.load(args);
+		config.recordReplays = false;
+		config.threads = 1;
+		if (config.seed == 0)
+			config.seed = 1;
+		if (config.scenarios == 0)
+			config.scenarios = 1000;
+		long t0 = System.nanoTime();
+		ScenarioBank bank = ScenarioBank.get(config);
+		System.out.printf("bank of %d scenarios: %.1f ms, %d kB%n", bank.count, (System.nanoTime() - t0) / 1e6, (bank.data.length * 4 + bank.count * 16) / 1024);
+
+		Simulation sim = new Simulation(config);
+		for (int t = 0; t < 20000; t++)
+			sim.step(config.worldWidth, config.worldHeight);
+		ArrayList<DNA> genomes = new ArrayList<DNA>();
+		for (Snake s : sim.snakes)
+			genomes.add(new DNA(s.dna.toArray()));
+
+		int ticks = config.scenarioTicks;
+		config.scenarioTicks = 1;
+		ScenarioBank.Runner setup = new ScenarioBank.Runner(bank, config);
+		for (int round = 0; round < 3; round++) { // the last round counts
+			int episodes = 0;
+			long start = System.nanoTime();
+			for (DNA g : genomes)
+				for (int i = 0; i < bank.count; i++, episodes++)
+					setup.play(g, i);
+			double reused = (System.nanoTime() - start) / 1e3 / episodes;
+			start = System.nanoTime();
+			for (DNA g : genomes)
+				for (int i = 0; i < bank.count; i++)
+					fresh(config, g, i);
+			double fresh = (System.nanoTime() - start) / 1e3 / episodes;
+			if (round == 2)
+				System.out.printf("episode setup and first tick: reused world %.1f us, new world %.1f us%n", reused, fresh);
+		}
+		config.scenarioTicks = ticks;
+		ScenarioBank.Runner runner = new ScenarioBank.Runner(bank, config);
+
+		System.out.println("genome  random spawns mean  stddev  scenarios mean  stddev over repeats");
+		for (int g = 0; g < genomes.size(); g++) {
+			double sum = 0, sq = 0;
+			int n = 8 * 16;
+			for (int i = 0; i < n; i++) {
+				double f = fresh(config, genomes.get(g), i);
+				sum += f;
+				sq += f * f;
+			}
+			double mean = sum / n;
+			double repeats[] = new double[4];
+			for (int r = 0; r < repeats.length; r++) {
+				for (int i = 0; i < 8; i++)
+					repeats[r] += runner.play(genomes.get(g), i) / 8;
+			}
+			double spread = 0;
+			for (double r : repeats)
+				spread += (r - repeats[0]) * (r - repeats[0]);
+			System.out.printf("%6d  %18.1f  %6.1f  %14.1f  %19.1f%n", g, mean, Math.sqrt(Math.max(0, sq / n - mean * mean)), repeats[0],
+					Math.sqrt(spread / repeats.length));
+		}
+	}
+
+	/**
+	 * Episode in a new world with a random spawn, the way the live
+	 * simulation sets them up
+	 *
+	 * @return fitness of the snake
+	 */
+	static double fresh(Config config, DNA genome, long seed) {
+		World world = new World(config);
+		world.random.setSeed(seed);
+		world.width = config.worldWidth;
+		world.height = config.worldHeight;
+		world.newNibble(config.numNibbles);
+		Snake snake = new Snake(genome, world);
+		snake.replay = null;
+		for (int t = 0; t < config.scenarioTicks && !snake.isDead; t++) {
+			world.update(world.width, world.height);
+			snake.act(world);
+			snake.commit(world);
+			world.replaceEatenNibbles();
+		}
+		return snake.getFitness();
+	}
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+public class StartupBenchmark {
+	/**
+	 * Cold start to first tick of short headless jobs: fresh JVMs running
+	 * "Launcher headless --maxTicks=1" without class data sharing, with the
+	 * default CDS archive of the JDK and with an AppCDS archive of the
+	 * simulation classes. Builds the jar and the archive first, the same
+	 * steps as described in the README. Arguments are passed on to the jobs.
+	 */
+	static final int runs = 10;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "snake-startup");
+		dir.mkdirs();
+		String java = ProcessHandle.current().info().command().orElse(System.getProperty("java.home") + "/bin/java");
+		String jar = jar(dir);
+		String archive = new File(dir, "snake.jsa").getPath();
+		new File(archive).delete();
+		List<String> jobArgs = new ArrayList<String>(Arrays.asList(args));
+		jobArgs.add("--maxTicks=1");
+
+		// build step: record the classes of a longer run
+		List<String> dump = new ArrayList<String>(jobArgs);
+		dump.set(dump.size() - 1, "--maxTicks=500");
+		long t0 = System.nanoTime();
+		run(command(java, "-XX:ArchiveClassesAtExit=" + archive, jar, dump), null);
+		System.out.printf("AppCDS archive %s: %d kB in %.0f ms%n", archive, new File(archive).length() / 1024, (System.nanoTime() - t0) / 1e6);
+
+		String variants[][] = { { "no CDS", "-Xshare:off" }, { "JDK CDS", "-Xshare:auto" }, { "AppCDS", "-XX:SharedArchiveFile=" + archive } };
+		double times[][] = new double[variants.length][runs];
+		for (int r = 0; r < runs; r++) { // interleaved, so that disk caches and load affect all alike
+			for (int v = 0; v < variants.length; v++) {
+				long start = System.nanoTime();
+				run(command(java, variants[v][1], jar, jobArgs), null);
+				times[v][r] = (System.nanoTime() - start) / 1e6;
+			}
+		}
+		System.out.println("variant    median ms  min ms  classes  from archive  java.awt");
+		for (int v = 0; v < variants.length; v++) {
+			int counts[] = new int[3];
+			run(command(java, variants[v][1] + " -Xlog:class+load", jar, jobArgs), line -> {
+				if (!line.contains("class,load"))
+					return;
+				counts[0]++;
+				if (line.contains("shared objects file"))
+					counts[1]++;
+				if (line.contains(" java.awt.") || line.contains(" javax.swing.") || line.contains(" sun.awt.") || line.contains(" sun.java2d."))
+					counts[2]++;
+			});
+			Arrays.sort(times[v]);
+			System.out.printf("%-8s %11.1f %7.1f %8d %13d %9d%n", variants[v][0], times[v][runs / 2], times[v][0], counts[0], counts[1], counts[2]);
+		}
+	}
+
+	interface LineHandler {
+		void line(String line);
+	}
+
+	static List<String> command(String java, String options, String jar, List<String> args) {
+		List<String> c = new ArrayList<String>();
+		c.add(java);
+		c.addAll(Arrays.asList(options.split(" ")));
+		c.add("-cp");
+		c.add(jar);
+		c.add("main.Launcher");
+		c.add("headless");
+		c.addAll(args);
+		return c;
+	}
+
+	static void run(List<String> command, LineHandler handler) throws IOException, InterruptedException {
+		Process p = new ProcessBuilder(command).redirectErrorStream(true).start();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+			String line;
+			while ((line = in.readLine()) != null)
+				if (handler != null)
+					handler.line(line);
+		}
+		if (p.waitFor() != 0)
+			throw new IOException("Failed: " + String.join(" ", command));
+	}
+
+	/**
+	 * AppCDS only archives classes from jars: uses the class path when it is
+	 * a jar, otherwise packs the class directory into one
+	 */
+	static String jar(File dir) throws IOException {
+		String classPath = System.getProperty("java.class.path").split(File.pathSeparator)[0];
+		if (classPath.endsWith(".jar"))
+			return new File(classPath).getAbsolutePath();
+		Path root = new File(classPath).toPath();
+		File jar = new File(dir, "snake.jar");
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "main.Launcher");
+		try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()), manifest);
+				Stream<Path> files = Files.walk(root)) {
+			for (Path f : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				out.putNextEntry(new JarEntry(root.relativize(f).toString().replace(File.separatorChar, '/')));
+				Files.copy(f, out);
+				out.closeEntry();
+			}
+		}
+		return jar.getPath();
+	}
+}
@@ -0,0 +1,93 @@
+package gameEngine;
+
+import java.util.Arrays;
+
+public class BodyGrid {
+	/**
+	 * Spatial hash over the segments of one snake, for the self collision in
+	 * Snake.move. Segments are inserted in body order as they are moved, so a
+	 * query returns the already moved segments near a position. Cells are one
+	 * segment diameter wide, kept in an open addressing table that is
+	 * cleared every tick.
+	 */
+	public final double cellSize;
+
+	private long keys[] = new long[0];
+	private int heads[] = new int[0]; // first segment per bucket, -1 if empty
+	private int next[] = new int[0]; // next segment in the same cell
+	private int mask;
+	private int candidates[] = new int[16];
+
+	public BodyGrid(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Empties the grid for a body of the given length
+	 */
+	public void clear(int segments) {
+		int size = Integer.highestOneBit(Math.max(16, segments * 4) - 1) << 1;
+		if (keys.length != size) {
+			keys = new long[size];
+			heads = new int[size];
+		}
+		Arrays.fill(heads, -1);
+		mask = size - 1;
+		if (next.length < segments)
+			next = new int[Math.max(segments, next.length * 2)];
+	}
+
+	private static long key(int cx, int cy) {
+		return (long) cx << 32 ^ (cy & 0xffffffffL);
+	}
+
+	private int bucket(long key) {
+		int b = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+		while (heads[b] != -1 && keys[b] != key)
+			b = (b + 1) & mask;
+		return b;
+	}
+
+	/**
+	 * Adds segment i at its current position
+	 */
+	public void insert(int i, double x, double y) {
+		long k = key((int) Math.floor(x / cellSize), (int) Math.floor(y / cellSize));
+		int b = bucket(k);
+		keys[b] = k;
+		next[i] = heads[b];
+		heads[b] = i;
+	}
+
+	/**
+	 * Segments in the cells overlapping a square around a position
+	 *
+	 * @param r
+	 *            half width of the square
+	 * @param from
+	 *            smallest segment index to return
+	 * @return number of segments, ascending in getCandidates()
+	 */
+	public int query(double x, double y, double r, int from) {
+		int n = 0;
+		int cx1 = (int) Math.floor((x + r) / cellSize), cy1 = (int) Math.floor((y + r) / cellSize);
+		for (int cy = (int) Math.floor((y - r) / cellSize); cy <= cy1; cy++) {
+			for (int cx = (int) Math.floor((x - r) / cellSize); cx <= cx1; cx++) {
+				int b = bucket(key(cx, cy));
+				for (int i = heads[b]; i != -1; i = next[i]) {
+					if (i < from)
+						break; // chains are descending
+					if (n == candidates.length)
+						candidates = Arrays.copyOf(candidates, n * 2);
+					candidates[n++] = i;
+				}
+			}
+		}
+		Arrays.sort(candidates, 0, n);
+		return n;
+	}
+
+	public int[] getCandidates() {
+		return candidates;
+	}
+}
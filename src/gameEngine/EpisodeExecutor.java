@@ -0,0 +1,242 @@
+package gameEngine;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+public class EpisodeExecutor implements AutoCloseable {
+	/**
+	 * Runs evaluation episodes, each a Simulation stepped until it is
+	 * finished, as one task per episode:
+	 * "virtual" starts a virtual thread per episode. They exist from Java 21
+	 * on and are looked up by reflection, so the code still builds for 17;
+	 * older runtimes fall back to "platform".
+	 * "platform" runs the episodes on a fork/join pool of platform threads.
+	 *
+	 * Episodes are grouped in a Scope, for example one generation. They check
+	 * between ticks whether the scope was cancelled or their deadline passed,
+	 * and virtual ones yield there. Deadlines are only checked between
+	 * ticks, so a single long step() can overrun them. Closing a scope
+	 * cancels what still runs and waits until every episode has returned, so
+	 * no episode outlives its scope. An episode that throws, errors
+	 * included, ends as FAILED with the throwable in failure.
+	 */
+	public static final String VIRTUAL = "virtual";
+	public static final String PLATFORM = "platform";
+
+	public final String mode; // mode actually used
+	private final ExecutorService executor;
+
+	/**
+	 * C'tor
+	 *
+	 * @param mode
+	 *            VIRTUAL or PLATFORM
+	 * @param threads
+	 *            size of the platform pool, 0 for all cores
+	 */
+	public EpisodeExecutor(String mode, int threads) {
+		ExecutorService virtual = mode.equals(VIRTUAL) ? newVirtualThreadExecutor() : null;
+		if (virtual != null) {
+			executor = virtual;
+			this.mode = VIRTUAL;
+		} else {
+			executor = threads > 0 ? new ForkJoinPool(threads) : new ForkJoinPool();
+			this.mode = PLATFORM;
+		}
+	}
+
+	/**
+	 * @return Executors.newVirtualThreadPerTaskExecutor(), or null before
+	 *         Java 21
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	public static boolean hasVirtualThreads() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Opens a scope for a group of episodes
+	 *
+	 * @param timeoutNanos
+	 *            time each episode may run, 0 for no limit
+	 */
+	public Scope open(long timeoutNanos) {
+		return new Scope(timeoutNanos);
+	}
+
+	/**
+	 * Stops the threads, scopes must have been closed before
+	 */
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public class Scope implements AutoCloseable {
+		private final long timeoutNanos;
+		private final ArrayList<Episode> episodes = new ArrayList<Episode>();
+		private volatile boolean cancelled = false;
+		private int pending = 0;
+
+		private Scope(long timeoutNanos) {
+			this.timeoutNanos = timeoutNanos;
+		}
+
+		/**
+		 * Starts an episode
+		 *
+		 * @param factory
+		 *            creates the simulation, called on the episode's thread
+		 * @param finished
+		 *            tested before each tick
+		 * @param afterTick
+		 *            called after each tick on the episode's thread, may be
+		 *            null
+		 * @return the episode, its state tells how it ended
+		 */
+		public synchronized Episode fork(Supplier<Simulation> factory, Predicate<Simulation> finished, Consumer<Simulation> afterTick) {
+			if (cancelled)
+				throw new IllegalStateException("Scope is cancelled");
+			Episode e = new Episode(this, factory, finished, afterTick);
+			episodes.add(e);
+			pending++;
+			executor.execute(e);
+			return e;
+		}
+
+		/**
+		 * Lets the running episodes stop after their current tick, episodes
+		 * that have not started yet do not start
+		 */
+		public void cancel() {
+			cancelled = true;
+		}
+
+		/**
+		 * Waits until all episodes of the scope have returned
+		 */
+		public synchronized void join() throws InterruptedException {
+			while (pending > 0)
+				wait();
+		}
+
+		private boolean isVirtual() {
+			return mode.equals(VIRTUAL);
+		}
+
+		private synchronized void done() {
+			pending--;
+			notifyAll();
+		}
+
+		public synchronized ArrayList<Episode> getEpisodes() {
+			return new ArrayList<Episode>(episodes);
+		}
+
+		/**
+		 * Cancels and waits, the scope cannot be used afterwards
+		 */
+		public void close() {
+			cancel();
+			boolean interrupted = false;
+			while (true) {
+				try {
+					join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	public static class Episode implements Runnable {
+		public static final int WAITING = 0;
+		public static final int RUNNING = 1;
+		public static final int FINISHED = 2;
+		public static final int CANCELLED = 3;
+		public static final int TIMED_OUT = 4;
+		public static final int FAILED = 5;
+
+		public volatile int state = WAITING;
+		public volatile Simulation simulation = null;
+		public Throwable failure = null;
+		private final Scope scope;
+		private final Supplier<Simulation> factory;
+		private final Predicate<Simulation> finished;
+		private final Consumer<Simulation> afterTick;
+
+		private Episode(Scope scope, Supplier<Simulation> factory, Predicate<Simulation> finished, Consumer<Simulation> afterTick) {
+			this.scope = scope;
+			this.factory = factory;
+			this.finished = finished;
+			this.afterTick = afterTick;
+		}
+
+		public void run() {
+			boolean yield = scope.isVirtual();
+			Simulation sim = null;
+			try {
+				if (scope.cancelled) {
+					state = CANCELLED;
+					return;
+				}
+				state = RUNNING;
+				long deadline = System.nanoTime() + scope.timeoutNanos;
+				sim = factory.get();
+				simulation = sim;
+				while (true) {
+					if (scope.cancelled) {
+						state = CANCELLED;
+						break;
+					}
+					if (finished.test(sim)) {
+						state = FINISHED;
+						break;
+					}
+					if (scope.timeoutNanos > 0 && System.nanoTime() - deadline > 0) {
+						state = TIMED_OUT;
+						break;
+					}
+					sim.step(sim.config.worldWidth, sim.config.worldHeight);
+					if (afterTick != null)
+						afterTick.accept(sim);
+					if (yield)
+						Thread.yield(); // cooperative, lets other episodes run
+				}
+			} catch (Throwable e) { // errors too, or the episode would stay RUNNING
+				failure = e;
+				state = FAILED;
+			} finally {
+				if (sim != null)
+					sim.close();
+				scope.done();
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package gameEngine;
+
+public class Frame {
+	/**
+	 * What one exported video frame shows: a single snake, the nibbles and the
+	 * network of the snake. Copied on the thread that owns the state, drawn
+	 * later by FrameExporter with Snake.draw, World.draw and NetworkDisplay
+	 */
+	public final int width, height;
+	public final long tick;
+	public final String label;
+	public final double segments[]; // x, y, rad for each segment
+	public final float hue;
+	public final int fade; // alpha of the snake
+	public final double nibbles[]; // x, y for each nibble
+	public final byte genome[]; // null to leave the network out
+	public final double activations[][]; // outputs of each stage
+
+	public Frame(int width, int height, long tick, String label, double segments[], float hue, int fade, double nibbles[], byte genome[],
+			double activations[][]) {
+		this.width = width;
+		this.height = height;
+		this.tick = tick;
+		this.label = label;
+		this.segments = segments;
+		this.hue = hue;
+		this.fade = fade;
+		this.nibbles = nibbles;
+		this.genome = genome;
+		this.activations = activations;
+	}
+
+	/**
+	 * Best living snake of a published snapshot
+	 */
+	public static Frame of(SimulationSnapshot s) {
+		String label = String.format("t=%d  g=%.1f  fitness=%.0f  best=%.0f", s.ticks, s.generation, s.bestSnakeScore, s.bestscore);
+		return new Frame(s.width, s.height, s.ticks, label, s.bestSnakeSegments, s.bestSnakeHue, 180, s.nibbles, s.bestSnakeGenome,
+				s.bestSnakeActivations);
+	}
+
+	/**
+	 * Current tick of a replay, evaluates the network for display like the
+	 * window does
+	 */
+	public static Frame of(ReplayPlayer p) {
+		Snake snake = p.snake;
+		if (!snake.isDead)
+			snake.brain(p.world);
+		double segments[] = new double[snake.snakeSegments.size() * 3];
+		for (int i = 0; i < snake.snakeSegments.size(); i++) {
+			PhysicalCircle c = snake.snakeSegments.get(i);
+			segments[3 * i] = c.x;
+			segments[3 * i + 1] = c.y;
+			segments[3 * i + 2] = c.rad;
+		}
+		NibblePool n = p.world.getNibbles();
+		double nibbles[] = new double[n.count * 2];
+		for (int i = 0; i < n.count; i++) {
+			nibbles[2 * i] = n.x[i];
+			nibbles[2 * i + 1] = n.y[i];
+		}
+		double activations[][] = new double[snake.brainNet.stages.length][];
+		for (int i = 0; i < activations.length; i++)
+			activations[i] = snake.brainNet.stages[i].output.clone();
+		String label = String.format("replay %016x  t=%d/%d  score=%.0f", p.replay.genomeHash, p.tick, p.replay.length, snake.score);
+		return new Frame(p.world.width, p.world.height, p.tick, label, segments, snake.hue, (int) snake.deathFade, nibbles, snake.dna.toArray(),
+				activations);
+	}
+}
@@ -0,0 +1,317 @@
+package gameEngine;
+
+import genetics.DNA;
+import helpers.Config;
+import neuralNetwork.NetworkDisplay;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+public class FrameExporter {
+	/**
+	 * Renders frames without a display and encodes them on a small pool of
+	 * encoder threads: PNG files into a directory, or one MJPEG (concatenated
+	 * JPEGs) or Y4M (uncompressed 4:2:0) stream. Drawing reuses Snake.draw,
+	 * World.draw and NetworkDisplay on a BufferedImage.
+	 *
+	 * The simulation only hands over published snapshots. When all encoders
+	 * are busy and the queue is full the frame is dropped, the simulation
+	 * never waits. Streams are written in frame order.
+	 */
+	public final Config config;
+	public final String path;
+	public final String format; // png, mjpeg or y4m
+	public final int width, height;
+	public final AtomicLong framesWritten = new AtomicLong();
+	public final AtomicLong framesDropped = new AtomicLong();
+	public long replaysDropped = 0;
+
+	private ThreadPoolExecutor encoders;
+	private ThreadPoolExecutor replays; // plays finished best episodes
+	private ThreadLocal<Renderer> renderers;
+	private long nextSequence = 0;
+	private OutputStream stream = null; // mjpeg and y4m
+	private long nextWrite = 0;
+	private HashMap<Long, byte[]> encoded = new HashMap<Long, byte[]>(); // waiting for earlier frames
+	private Replay lastReplay = null;
+
+	/**
+	 * C'tor, opens the output
+	 *
+	 * @param config
+	 *            exportPath, exportFormat, exportThreads and exportQueue, the
+	 *            frame size is the world size
+	 */
+	public FrameExporter(Config config) throws IOException {
+		this.config = config;
+		path = config.exportPath;
+		format = config.exportFormat;
+		width = config.worldWidth & ~1; // 4:2:0 needs even sizes
+		height = config.worldHeight & ~1;
+		if (format.equals("png")) {
+			File dir = new File(path);
+			if (!dir.isDirectory() && !dir.mkdirs())
+				throw new IOException("Cannot create directory " + path);
+		} else {
+			stream = new BufferedOutputStream(new FileOutputStream(path), 1 << 20);
+			if (format.equals("y4m"))
+				stream.write(("YUV4MPEG2 W" + width + " H" + height + " F" + Math.max(1, Math.round(1000. / config.exportPeriod / Math.max(1, config.updatePeriod)))
+						+ ":1 Ip A1:1 C420jpeg\n").getBytes(StandardCharsets.US_ASCII));
+		}
+		renderers = ThreadLocal.withInitial(() -> new Renderer(config, width, height));
+		encoders = new ThreadPoolExecutor(config.exportThreads, config.exportThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(config.exportQueue), r -> daemon(r, "frame-encoder"));
+		replays = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1), r -> daemon(r, "replay-export"));
+	}
+
+	private static Thread daemon(Runnable r, String name) {
+		Thread t = new Thread(r, name);
+		t.setDaemon(true);
+		return t;
+	}
+
+	/**
+	 * Feeds the exporter with the published snapshots of a simulation
+	 *
+	 * @param replaysOnly
+	 *            true to export each new best episode once it has ended,
+	 *            false for the best living snake of every snapshot
+	 */
+	public void attach(Simulation sim, boolean replaysOnly) {
+		sim.publishPeriod = config.exportPeriod;
+		sim.publishSnapshots = true;
+		if (replaysOnly)
+			sim.snapshotListener = s -> offerReplay(sim);
+		else
+			sim.snapshotListener = s -> {
+				if (s.bestSnakeGenome != null)
+					offer(Frame.of(s));
+			};
+	}
+
+	/**
+	 * Queues a frame, never blocks
+	 *
+	 * @return false when the frame was dropped
+	 */
+	public boolean offer(Frame f) {
+		return submit(f, false);
+	}
+
+	private synchronized boolean submit(Frame f, boolean wait) {
+		while (true) {
+			long sequence = nextSequence;
+			try {
+				encoders.execute(() -> encode(f, sequence));
+				nextSequence++;
+				return true;
+			} catch (RejectedExecutionException e) {
+				if (!wait || encoders.isShutdown()) {
+					framesDropped.incrementAndGet();
+					return false;
+				}
+			}
+			try {
+				wait(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Plays the current best episode on the replay thread once it has ended
+	 * and a newer one than the last exported. Called on the simulation thread:
+	 * only the genome is copied, an episode arriving while the previous one
+	 * is still exported is dropped
+	 */
+	private void offerReplay(Simulation sim) {
+		Replay r = sim.bestReplay;
+		if (r == null || r == lastReplay || !r.complete)
+			return;
+		lastReplay = r;
+		DNA genome = r.dna.copy();
+		try {
+			replays.execute(() -> {
+				ReplayPlayer p = new ReplayPlayer(r, genome, config);
+				while (true) {
+					if (!submit(Frame.of(p), true))
+						return; // closed
+					for (int i = 0; i < config.exportPeriod; i++)
+						if (!p.step())
+							return;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			replaysDropped++;
+		}
+	}
+
+	private void encode(Frame f, long sequence) {
+		try {
+			BufferedImage image = renderers.get().render(f);
+			byte data[] = null;
+			if (format.equals("png")) {
+				ImageIO.write(image, "png", new File(path, String.format("frame_%06d.png", sequence)));
+				framesWritten.incrementAndGet();
+			} else if (format.equals("mjpeg")) {
+				ByteArrayOutputStream b = new ByteArrayOutputStream();
+				ImageIO.write(image, "jpg", b);
+				data = b.toByteArray();
+			} else {
+				data = toY4m(image);
+			}
+			if (stream != null)
+				write(sequence, data);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Frame export failed: " + e);
+			if (stream != null)
+				write(sequence, null); // do not hold back the later frames
+		}
+	}
+
+	/**
+	 * Writes encoded frames in sequence order
+	 */
+	private void write(long sequence, byte data[]) {
+		synchronized (encoded) {
+			encoded.put(sequence, data);
+			try {
+				while (encoded.containsKey(nextWrite)) {
+					byte d[] = encoded.remove(nextWrite++);
+					if (d != null) {
+						stream.write(d);
+						framesWritten.incrementAndGet();
+					}
+				}
+				stream.flush();
+			} catch (IOException e) {
+				System.err.println("Frame export failed: " + e);
+			}
+		}
+	}
+
+	/**
+	 * One Y4M frame: full range BT.601 luma, chroma averaged over 2x2 pixels
+	 */
+	private byte[] toY4m(BufferedImage image) {
+		int rgb[] = image.getRGB(0, 0, width, height, null, 0, width);
+		byte header[] = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+		int luma = width * height, chroma = luma / 4;
+		byte out[] = new byte[header.length + luma + 2 * chroma];
+		System.arraycopy(header, 0, out, 0, header.length);
+		for (int i = 0; i < luma; i++) {
+			int p = rgb[i];
+			out[header.length + i] = (byte) Math.round(.299 * (p >> 16 & 0xff) + .587 * (p >> 8 & 0xff) + .114 * (p & 0xff));
+		}
+		int u = header.length + luma, v = u + chroma;
+		for (int y = 0; y < height; y += 2) {
+			for (int x = 0; x < width; x += 2) {
+				double r = 0, g = 0, b = 0;
+				for (int d = 0; d < 4; d++) {
+					int p = rgb[(y + d / 2) * width + x + d % 2];
+					r += (p >> 16 & 0xff) / 4.;
+					g += (p >> 8 & 0xff) / 4.;
+					b += (p & 0xff) / 4.;
+				}
+				int i = (y / 2) * (width / 2) + x / 2;
+				out[u + i] = (byte) Math.round(128 - .168736 * r - .331264 * g + .5 * b);
+				out[v + i] = (byte) Math.round(128 + .5 * r - .418688 * g - .081312 * b);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Stops accepting frames, finishes the queued ones and closes the output
+	 */
+	public void close() {
+		replays.shutdownNow();
+		encoders.shutdown();
+		try {
+			encoders.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (stream != null) {
+			synchronized (encoded) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					System.err.println("Frame export failed: " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drawing state of one encoder thread: a private world and snake that get
+	 * the values of each frame, so their draw methods can be used
+	 */
+	private static class Renderer {
+		final BufferedImage image;
+		final World world;
+		final Snake snake;
+		byte genome[] = null; // loaded into the network
+
+		Renderer(Config config, int width, int height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			world = new World(config);
+			world.width = width;
+			world.height = height;
+			snake = new Snake(new DNA(Snake.getDnaLength(config)), world);
+			snake.replay = null;
+		}
+
+		BufferedImage render(Frame f) {
+			Graphics2D g = image.createGraphics();
+			g.setColor(Color.black);
+			g.fillRect(0, 0, image.getWidth(), image.getHeight());
+			if (f.genome != null && f.activations != null) {
+				if (!Arrays.equals(genome, f.genome)) {
+					genome = f.genome;
+					snake.dna = new DNA(f.genome);
+					snake.reloadFromDNA();
+				}
+				for (int i = 0; i < f.activations.length; i++)
+					System.arraycopy(f.activations[i], 0, snake.brainNet.stages[i].output, 0, f.activations[i].length);
+				NetworkDisplay.display(snake.brainNet, g, 0, f.width, f.height);
+			}
+			snake.snakeSegments.clear();
+			for (int i = 0; i + 2 < f.segments.length; i += 3)
+				snake.snakeSegments.add(new PhysicalCircle(f.segments[i], f.segments[i + 1], f.segments[i + 2]));
+			snake.hue = f.hue;
+			snake.deathFade = f.fade;
+			snake.draw(g);
+			NibblePool n = world.getNibbles();
+			n.clear();
+			for (int i = 0; i + 1 < f.nibbles.length; i += 2)
+				n.add(f.nibbles[i], f.nibbles[i + 1], 0, 0, 0);
+			world.draw(g);
+			g.setColor(Color.DARK_GRAY);
+			g.setFont(new Font("Arial", 0, 16));
+			g.drawString(f.label, 10, image.getHeight() - 10);
+			g.dispose();
+			return image;
+		}
+	}
+}
@@ -1,216 +1,184 @@
 package gameEngine;
 
-import genetics.DNA;
-import helpers.KeyboardListener;
+import helpers.CommandQueue;
+import helpers.Config;
+import neuralNetwork.NetworkDisplay;
+import statistics.StatsTimeline;
 
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JComponent;
 
 public class GameLoop extends JComponent {
-	// main update frequency:
-	public static final long UPDATEPERIOD = 8;
-	public double per = UPDATEPERIOD;
+	// parameters, see Config:
+	public final Config config;
+	public final long updatePeriod; // main update frequency
+	public double per;
 
 	// constants:
 	public static final int globalCircleRadius = 20;
-	public static final int numSnakes = 8;
-	public static final int numNibbles = 4;
 
-	// Genetics parameter initialization:
-	public static double mutationrate = .02;
-	public double currentGeneration = 0;
+	// world, snakes and genetics:
+	public Simulation simulation;
+	private ScheduledExecutorService scheduler;
+	public volatile ReplayPlayer replayPlayer = null; // playback of the best episode
 
-	// world and snakes initialization:
-	public World world = new World();
-	public LinkedList<Snake> snakes = new LinkedList<Snake>();
-	public LinkedList<Snake> backupSnakes = new LinkedList<Snake>(); // to
-																		// resume
-																		// from
-																		// single
-																		// mode
-
-	// Best:
-	public DNA bestDna = null;
-	public double bestscore = 0;
-
-	// Statistics:
-	public LinkedList<Double> fitnessTimeline = new LinkedList<Double>();
-	public double currentMaxFitness = 0;
-
-	// Mode control:
-	public boolean singleSnakeModeActive = false;
+	// Mode control, changed by commands:
+	private final CommandQueue commands;
 	public boolean displayStatisticsActive = false;
 	public boolean simulationPaused = false;
+	public double speed = 1; // ticks per period
+	public volatile boolean rendering = true; // false: no drawing, as many ticks as fit in a period
+	private double stepCredit = 0; // for fractional speeds
 
 	/**
 	 * Component with the main loop This should be separated from the graphics,
 	 * but I was to lazy.
 	 */
-	public GameLoop(KeyboardListener keyb) {
-		world.height = 200;
-		world.width = 300;
-		new Thread(new Runnable() {
-			private long simulationLastMillis;
-			private long statisticsLastMillis;
-
-			public void run() {
-				simulationLastMillis = System.currentTimeMillis() + 100; // initial
-																			// wait
-																			// for
-																			// graphics
-																			// to
-																			// settle
-				statisticsLastMillis = 0;
-				while (true) {
-					if (System.currentTimeMillis() - simulationLastMillis > UPDATEPERIOD) {
-						synchronized (snakes) { // protect read
-							long currentTime = System.currentTimeMillis();
-							// Controls
-							char keyCode = (char) keyb.getKey();
-							switch (keyCode) {
-							case ' ': // space
-								if (!singleSnakeModeActive) {
-									singleSnakeModeActive = true;
-									displayStatisticsActive = false;
-									backupSnakes.clear();
-									backupSnakes.addAll(snakes);
-									snakes.clear();
-									snakes.add(new Snake(bestDna, world));
-								}
-								break;
-							case 'A': // a = pause
-								simulationPaused = true;
-								break;
-							case 'B': // b = resume
-								simulationPaused = false;
-								break;
-							case 'C': // c = show stats
-								displayStatisticsActive = true;
-								break;
-							case 'D': // d = hide stats
-								displayStatisticsActive = false;
-								break;
-							}
-							// initilize first generation:
-							if (snakes.isEmpty()) {
-								firstGeneration(numSnakes);
-								world.newNibble(numNibbles);
-							}
-							// computation:
-							if (!simulationPaused) {
-								int deadCount = 0;
-								world.update(getWidth(), getHeight());
-								synchronized (fitnessTimeline) {
-									if (world.clock - statisticsLastMillis > 1000 && !singleSnakeModeActive) {
-										fitnessTimeline.addLast(currentMaxFitness);
-										currentMaxFitness = 0;
-										if (fitnessTimeline.size() >= world.width / 2) {
-											fitnessTimeline.removeFirst();
-										}
-										statisticsLastMillis = world.clock;
-									}
-								}
-								for (Snake s : snakes) {
-									if (!s.update(world)) {
-										deadCount++;
-									}
-									if (s.getFitness() > currentMaxFitness)
-										currentMaxFitness = s.getFitness();
-									if (s.getFitness() > bestscore) {
-										bestscore = s.getFitness();
-										bestDna = s.dna;
-									}
-								}
-								if (deadCount > 0 && singleSnakeModeActive) {
-									singleSnakeModeActive = false;
-									snakes.clear();
-									snakes.addAll(backupSnakes);
-
-								} else {
-									// new snakes
-									for (int i = 0; i < deadCount; i++) {
-										newSnake();
-										currentGeneration += 1 / (double) numSnakes;
-									}
-								}
-								Iterator<Snake> it = snakes.iterator();
-								while (it.hasNext()) {
-									Snake s = it.next();
-									if (s.deathFade <= 0) {
-										it.remove();
-									}
-								}
-							} else {
-								// print status:
-								snakes.get(0).brain(world);
-							}
+	public GameLoop(CommandQueue commands, Config config) {
+		this.config = config;
+		this.commands = commands;
+		updatePeriod = config.updatePeriod;
+		per = updatePeriod;
+		simulation = new Simulation(config);
+		simulation.world.height = 200;
+		simulation.world.width = 300;
+		scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "simulation");
+			t.setDaemon(true);
+			return t;
+		});
+		// initial wait for graphics to settle, then one tick per period (as
+		// fast as possible for a period of 0):
+		scheduler.scheduleAtFixedRate(() -> tick(), 100000, Math.max(1, updatePeriod * 1000), TimeUnit.MICROSECONDS);
+	}
 
-							repaint();
-							per = System.currentTimeMillis() - currentTime;
-							simulationLastMillis += UPDATEPERIOD;
-						}
-					}
-				}
-			}
-		}).start();
+	/**
+	 * Stops the simulation thread
+	 */
+	public void stop() {
+		scheduler.shutdown();
 	}
 
 	/**
-	 * initializes snake array with n fresh snakes
-	 * 
-	 * @param n
-	 *            amount of snakes
+	 * Stops the simulation thread, waits for the tick in progress and closes
+	 * the simulation, so that pending checkpoints are complete
 	 */
-	public void firstGeneration(int n) {
-		snakes.clear();
-		for (int i = 0; i < n; i++) {
-			snakes.add(new Snake(null, world));
+	public void close() {
+		scheduler.shutdown();
+		try {
+			scheduler.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
-		world.reset();
+		simulation.close();
 	}
 
 	/**
-	 * Creates the mating pool out of the snake-list
-	 * 
-	 * @return Mating pool as list
+	 * One period: handles the commands, advances the simulation or the
+	 * replay
 	 */
-	public ArrayList<Snake> makeMatingpool() {
-		ArrayList<Snake> matingpool = new ArrayList<Snake>();
-		// get maximum fitness:
-		double maxscore = 0;
-		for (Snake s : snakes) {
-			if (s.getFitness() > maxscore) {
-				maxscore = s.getFitness();
-			}
-		}
-		// Add snakes according to fitness
-		for (Snake s : snakes) {
-			int amount = (int) (s.getFitness() * 100 / maxscore);
-			for (int i = 0; i < amount; i++) {
-				matingpool.add(s);
+	private void tick() {
+		try {
+			synchronized (simulation.snakes) { // protect read
+				long currentTime = System.currentTimeMillis();
+				// Controls
+				CommandQueue.Command c;
+				while ((c = commands.poll()) != null)
+					handle(c);
+				// computation:
+				if (!simulationPaused) {
+					if (rendering) {
+						stepCredit += speed;
+						for (; stepCredit >= 1; stepCredit--)
+							advance();
+					} else {
+						long end = System.nanoTime() + Math.max(1, updatePeriod) * 1000000;
+						do
+							advance();
+						while (System.nanoTime() < end);
+					}
+				}
+				if (replayPlayer != null) {
+					replayPlayer.snake.brain(replayPlayer.world);
+				} else if (simulationPaused && !simulation.snakes.isEmpty()) {
+					// print status:
+					simulation.snakes.get(0).brain(simulation.world);
+				}
+
+				if (rendering)
+					repaint();
+				per = System.currentTimeMillis() - currentTime;
 			}
+		} catch (RuntimeException e) {
+			// an exception would cancel all further ticks
+			e.printStackTrace();
 		}
-		return matingpool;
 	}
 
 	/**
-	 * Creates a new snake using the genetic algorithm and adds it to the
-	 * snake-list
+	 * One tick of the replay if there is one, of the simulation otherwise
 	 */
-	public void newSnake() {
-		mutationrate = 10 / currentMaxFitness;
-		ArrayList<Snake> matingpool = makeMatingpool();
-		int idx1 = (int) (Math.random() * matingpool.size());
-		int idx2 = (int) (Math.random() * matingpool.size());
-		DNA parentA = matingpool.get(idx1).dna;
-		DNA parentB = matingpool.get(idx2).dna;
-		snakes.add(new Snake(parentA.crossoverBytewise(parentB, mutationrate), world));
+	private void advance() {
+		if (replayPlayer != null) {
+			if (!replayPlayer.step())
+				replayPlayer = null;
+		} else {
+			simulation.step(getWidth(), getHeight());
+		}
+	}
+
+	private void handle(CommandQueue.Command c) {
+		switch (c.type) {
+		case CommandQueue.WATCH:
+			if (!simulation.singleSnakeModeActive && replayPlayer == null) {
+				displayStatisticsActive = false;
+				if (simulation.bestReplay != null)
+					replayPlayer = new ReplayPlayer(simulation.bestReplay, config);
+				else if (simulation.bestDna != null)
+					simulation.watchBest();
+			}
+			break;
+		case CommandQueue.FORWARD:
+			if (replayPlayer != null)
+				for (int i = 0; i < 7; i++)
+					replayPlayer.step();
+			break;
+		case CommandQueue.REWIND:
+			if (replayPlayer != null)
+				replayPlayer.seek(replayPlayer.tick - 16);
+			break;
+		case CommandQueue.PAUSE:
+			simulationPaused = true;
+			break;
+		case CommandQueue.RESUME:
+			simulationPaused = false;
+			break;
+		case CommandQueue.STATS:
+			displayStatisticsActive = true;
+			break;
+		case CommandQueue.HIDE_STATS:
+			displayStatisticsActive = false;
+			break;
+		case CommandQueue.CHECKPOINT:
+			simulation.checkpoint(c.argument != null ? c.argument : config.checkpointPath);
+			break;
+		case CommandQueue.SPEED:
+			speed = c.value;
+			stepCredit = 0;
+			break;
+		case CommandQueue.HEADLESS:
+			rendering = false;
+			break;
+		case CommandQueue.WINDOW:
+			rendering = true;
+			break;
+		}
 	}
 
 	/**
@@ -218,6 +186,7 @@ public class GameLoop extends JComponent {
 	 */
 	protected void paintComponent(Graphics g) {
 		super.paintComponent(g);
+		World world = simulation.world;
 		// Background:
 		g.setColor(Color.black);
 		g.fillRect(0, 0, getWidth(), getHeight());
@@ -228,35 +197,45 @@ public class GameLoop extends JComponent {
 			g.setFont(new Font("Arial", 0, 64));
 			g.drawString("t = " + Long.toString(world.clock / 1000), 20, 105);
 
-			g.drawString("g = " + Integer.toString((int) currentGeneration), 20, 205);
+			g.drawString("g = " + Integer.toString((int) simulation.currentGeneration), 20, 205);
 			g.setFont(new Font("Arial", 0, 32));
-			g.drawString("Mut. Prob.: " + String.format("%1$,.3f", mutationrate), 20, 305);
-			g.drawString("Max fitness: " + Integer.toString((int) currentMaxFitness), 20, 355);
+			g.drawString("Mut. Prob.: " + String.format("%1$,.3f", simulation.mutationrate), 20, 305);
+			g.drawString("Max fitness: " + Integer.toString((int) simulation.currentMaxFitness), 20, 355);
 
 			// print timeline:
-			synchronized (fitnessTimeline) {
-				if (!fitnessTimeline.isEmpty()) {
-					double last = fitnessTimeline.getFirst();
-					int x = 0;
-					double limit = getHeight();
-					if (limit < bestscore)
-						limit = bestscore;
-					for (Double d : fitnessTimeline) {
-						g.setColor(new Color(0, 1, 0, .5f));
-						g.drawLine(x, (int) (getHeight() - getHeight() * last / limit), x + 2, (int) (getHeight() - getHeight() * d / limit));
-						last = d;
-						x += 2;
-					}
+			StatsTimeline.Snapshot timeline = simulation.timeline.snapshot(StatsTimeline.SECONDS, world.width / 2 - 1);
+			if (timeline.size > 0) {
+				double last = timeline.get(StatsTimeline.MAX, 0);
+				int x = 0;
+				double limit = getHeight();
+				if (limit < simulation.bestscore)
+					limit = simulation.bestscore;
+				g.setColor(new Color(0, 1, 0, .5f));
+				for (int i = 0; i < timeline.size; i++) {
+					double d = timeline.get(StatsTimeline.MAX, i);
+					g.drawLine(x, (int) (getHeight() - getHeight() * last / limit), x + 2, (int) (getHeight() - getHeight() * d / limit));
+					last = d;
+					x += 2;
 				}
 			}
 		}
-		// neural net:
-		if (singleSnakeModeActive) {
-			snakes.getFirst().brainNet.display(g, 0, world.width, world.height);
+		// replay:
+		ReplayPlayer player = replayPlayer;
+		if (player != null) {
+			synchronized (simulation.snakes) {
+				NetworkDisplay.display(player.snake.brainNet, g, 0, player.world.width, player.world.height);
+				player.snake.draw(g);
+				player.world.draw(g);
+			}
+			return;
 		}
 		// snakes:
-		synchronized (snakes) {
-			for (Snake s : snakes)
+		synchronized (simulation.snakes) {
+			// neural net:
+			if (simulation.singleSnakeModeActive) {
+				NetworkDisplay.display(simulation.snakes.getFirst().brainNet, g, 0, world.width, world.height);
+			}
+			for (Snake s : simulation.snakes)
 				s.draw(g);
 			world.draw(g);
 		}
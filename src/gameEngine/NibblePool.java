@@ -0,0 +1,134 @@
+package gameEngine;
+
+public final class NibblePool {
+	/**
+	 * Nibbles of a world in primitive arrays of fixed capacity. Living
+	 * nibbles are packed at the indices 0 until count, removal moves the last
+	 * one into the gap. Each nibble also has a handle that stays valid while
+	 * it lives: the slot from a free list plus a generation that is bumped
+	 * when the slot is freed, so a stale handle is detected.
+	 * Attributes are public for C-Like access.
+	 */
+	public final int capacity;
+	public final double rad = GameLoop.globalCircleRadius;
+	public int count = 0;
+	public final double x[], y[], vx[], vy[];
+	public final long t[]; // general purpose timer, see PhysicalCircle
+
+	private final int slotOf[]; // index -> slot
+	private final int indexOfSlot[]; // slot -> index
+	private final int generation[]; // per slot
+	private final int free[]; // stack of free slots
+	private int freeCount;
+
+	public NibblePool(int capacity) {
+		this.capacity = capacity;
+		x = new double[capacity];
+		y = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		t = new long[capacity];
+		slotOf = new int[capacity];
+		indexOfSlot = new int[capacity];
+		generation = new int[capacity];
+		free = new int[capacity];
+		clear();
+	}
+
+	/**
+	 * Adds a nibble
+	 *
+	 * @return its index, or -1 when the pool is full
+	 */
+	public int add(double px, double py, double pvx, double pvy, long pt) {
+		if (count == capacity)
+			return -1;
+		int i = count++;
+		int slot = free[--freeCount];
+		slotOf[i] = slot;
+		indexOfSlot[slot] = i;
+		x[i] = px;
+		y[i] = py;
+		vx[i] = pvx;
+		vy[i] = pvy;
+		t[i] = pt;
+		return i;
+	}
+
+	/**
+	 * Removes a nibble, the last one takes its index
+	 *
+	 * @param i
+	 *            index of the nibble
+	 */
+	public void remove(int i) {
+		int slot = slotOf[i];
+		generation[slot]++;
+		free[freeCount++] = slot;
+		int last = --count;
+		if (i != last) {
+			x[i] = x[last];
+			y[i] = y[last];
+			vx[i] = vx[last];
+			vy[i] = vy[last];
+			t[i] = t[last];
+			slotOf[i] = slotOf[last];
+			indexOfSlot[slotOf[i]] = i;
+		}
+	}
+
+	public void clear() {
+		count = 0;
+		freeCount = capacity;
+		for (int s = 0; s < capacity; s++)
+			free[s] = capacity - 1 - s; // slot 0 first
+	}
+
+	/**
+	 * Handle of a nibble, valid until it is removed
+	 */
+	public long handle(int i) {
+		int slot = slotOf[i];
+		return (long) generation[slot] << 32 | slot;
+	}
+
+	/**
+	 * Current index of a handle
+	 *
+	 * @return index, or -1 when the nibble was removed in the meantime
+	 */
+	public int indexOf(long handle) {
+		int slot = (int) handle;
+		if (slot < 0 || slot >= capacity || generation[slot] != (int) (handle >>> 32))
+			return -1;
+		int i = indexOfSlot[slot];
+		return i < count && slotOf[i] == slot ? i : -1;
+	}
+
+	/**
+	 * Moves all nibbles and bounces them off the borders, see
+	 * PhysicalCircle.updatePosition and collideWall
+	 */
+	public void update(double xmin, double ymin, double xmax, double ymax) {
+		for (int i = 0; i < count; i++) {
+			x[i] += vx[i];
+			y[i] += vy[i];
+			if (x[i] - rad < xmin) {
+				x[i] = xmin + rad;
+				vx[i] = -vx[i] * .9;
+			}
+			if (x[i] + rad > xmax) {
+				x[i] = xmax - rad;
+				vx[i] = -vx[i] * .9;
+			}
+			if (y[i] - rad < ymin) {
+				y[i] = ymin + rad;
+				vy[i] = -vy[i] * .9;
+			}
+			if (y[i] + rad > ymax) {
+				y[i] = ymax - rad;
+				vy[i] = -vy[i] * .9;
+			}
+		}
+	}
+}
@@ -118,12 +118,19 @@ public class PhysicalCircle {
 		if (this == o)
 			return;
 		double s = this.rad + o.rad;
-		double d = Math.sqrt((this.x - o.x) * (this.x - o.x) + (this.y - o.y) * (this.y - o.y));
-		double a = Math.atan2(this.y - o.y, this.x - o.x);
+		double q = (this.x - o.x) * (this.x - o.x) + (this.y - o.y) * (this.y - o.y);
+		// clearly apart, skips sqrt and atan2 (the margin keeps the result
+		// exactly as with the full test below):
+		if (q > s * s * (1 + 1e-9))
+			return;
+		double d = Math.sqrt(q);
 
 		if (d < s) {
-			this.x = o.x + s * Math.cos(a);
-			this.y = o.y + s * Math.sin(a);
+			// unit vector from o, (1, 0) when they coincide like atan2(0, 0):
+			double ux = d > 0 ? (this.x - o.x) / d : 1;
+			double uy = d > 0 ? (this.y - o.y) / d : 0;
+			this.x = o.x + s * ux;
+			this.y = o.y + s * uy;
 		}
 
 	}
@@ -140,11 +147,12 @@ public class PhysicalCircle {
 			return;
 		double s = this.rad + o.rad;
 		double d = Math.sqrt((this.x - o.x) * (this.x - o.x) + (this.y - o.y) * (this.y - o.y));
-		double a = Math.atan2(this.y - o.y, this.x - o.x);
 
 		if (d < s) {
-			this.x = o.x + s * Math.cos(a);
-			this.y = o.y + s * Math.sin(a);
+			double ux = d > 0 ? (this.x - o.x) / d : 1;
+			double uy = d > 0 ? (this.y - o.y) / d : 0;
+			this.x = o.x + s * ux;
+			this.y = o.y + s * uy;
 			this.vx -= (o.x - this.x) * 2 / d * speed / 5;
 			this.vy -= (o.y - this.y) * 2 / d * speed / 5;
 		}
@@ -160,14 +168,20 @@ public class PhysicalCircle {
 		if (this == o)
 			return;
 		double s = this.rad + o.rad;
-		double a = Math.atan2(this.y - o.y, this.x - o.x);
-		this.vx += (o.x + s * Math.cos(a) - this.x) / s / 32;
-		this.vy += (o.y + s * Math.sin(a) - this.y) / s / 32;
-		this.x += (o.x + s * Math.cos(a) - this.x) / s * 24 + o.vx * .24;
-		this.y += (o.y + s * Math.sin(a) - this.y) / s * 24 + o.vy * .24;
+		double dx = this.x - o.x, dy = this.y - o.y;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		double ux = d > 0 ? dx / d : 1, uy = d > 0 ? dy / d : 0;
+		// offset to the contact point:
+		double ex = o.x + s * ux - this.x, ey = o.y + s * uy - this.y;
+		this.vx += ex / s / 32;
+		this.vy += ey / s / 32;
+		this.x += ex / s * 24 + o.vx * .24;
+		this.y += ey / s * 24 + o.vy * .24;
 	}
 	/**
-	 * Makes this circle follow another circle so they always contact each other
+	 * Makes this circle follow another circle so they always contact each other.
+	 * Uses the normalized difference vector, which is the cos and sin of its
+	 * angle without calculating any trigonometry.
 	 * 
 	 * @param o the other circle
 	 */
@@ -175,9 +189,16 @@ public class PhysicalCircle {
 		if (this == o)
 			return;
 		double s = this.rad + o.rad;
-		double a = Math.atan2(this.y - o.y, this.x - o.x);
-		this.x = (o.x + s * Math.cos(a));
-		this.y = (o.y + s * Math.sin(a));
+		double dx = this.x - o.x, dy = this.y - o.y;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		if (d > 0) {
+			double k = s / d;
+			this.x = o.x + dx * k;
+			this.y = o.y + dy * k;
+		} else { // like atan2(0, 0) = 0
+			this.x = o.x + s;
+			this.y = o.y;
+		}
 	}
 	/**
 	 * checks whether this circle is closer than the threshold to another
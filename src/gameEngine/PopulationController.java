@@ -0,0 +1,111 @@
+package gameEngine;
+
+import genetics.DNA;
+import helpers.Config;
+
+import java.util.Random;
+
+public class PopulationController {
+	/**
+	 * Adapts mutation rate and population size once per generation, aiming at
+	 * the best fitness per compute time instead of per generation.
+	 * 
+	 * Diversity is the mean Hamming distance of sampled pairs of living
+	 * genomes, as a fraction of the bits (0 for a converged population, .5
+	 * for random genomes). Below targetDiversity the mutation rate is raised,
+	 * above it lowered. The population is sized so that one generation takes
+	 * about generationSeconds of simulation time, measured as time spent in
+	 * step() per evaluation (snake death) and smoothed over generations,
+	 * since lifetimes vary a lot.
+	 * 
+	 * Decisions depend on the measured speed, so seeded runs are only
+	 * reproducible without the controller.
+	 */
+	public static final int samplePairs = 32;
+	public static final double rateStep = 1.2; // factor per decision
+	public static final double populationStep = 1.25; // maximum factor per decision
+	public static final double smoothing = .3; // weight of the newest measurement
+	public static final double minRate = .001;
+	public static final double maxRate = .25;
+
+	public final double generationSeconds;
+	public final double targetDiversity;
+	public final int minSnakes;
+	public final int maxSnakes;
+
+	// decisions and the measurements they were based on:
+	public int populationTarget;
+	public double diversity = 0;
+	public double evaluationsPerSecond = 0;
+	public double secondsPerGeneration = 0;
+	public long decisions = 0;
+
+	private Random random;
+	private long evaluations = 0;
+	private long nanos = 0;
+
+	public PopulationController(Config config, long seed) {
+		generationSeconds = config.generationSeconds;
+		targetDiversity = config.targetDiversity;
+		minSnakes = config.minSnakes;
+		maxSnakes = config.maxSnakes;
+		populationTarget = Math.max(minSnakes, Math.min(maxSnakes, config.numSnakes));
+		random = new Random(seed);
+	}
+
+	/**
+	 * Number of snakes to create after a tick
+	 * 
+	 * @param alive
+	 *            living snakes after the tick
+	 */
+	public int births(int alive) {
+		return Math.max(0, populationTarget - alive);
+	}
+
+	/**
+	 * Called after each tick, decides when a generation was evaluated
+	 * 
+	 * @param deaths
+	 *            evaluations finished in the tick
+	 * @param tickNanos
+	 *            time spent in the tick
+	 * @return true when a decision was made
+	 */
+	public boolean update(Simulation sim, int deaths, long tickNanos) {
+		evaluations += deaths;
+		nanos += tickNanos;
+		if (evaluations < populationTarget)
+			return false;
+		double measured = evaluations * 1e9 / Math.max(1, nanos);
+		evaluationsPerSecond = decisions == 0 ? measured : smoothing * measured + (1 - smoothing) * evaluationsPerSecond;
+		secondsPerGeneration = nanos / 1e9;
+		evaluations = 0;
+		nanos = 0;
+
+		diversity = sampleDiversity(sim);
+		if (diversity < targetDiversity)
+			sim.mutationrate = Math.min(maxRate, sim.mutationrate * rateStep);
+		else
+			sim.mutationrate = Math.max(minRate, sim.mutationrate / rateStep);
+
+		double ideal = generationSeconds * evaluationsPerSecond;
+		double limited = Math.max(populationTarget / populationStep, Math.min(populationTarget * populationStep, ideal));
+		populationTarget = (int) Math.max(minSnakes, Math.min(maxSnakes, Math.round(limited)));
+		decisions++;
+		return true;
+	}
+
+	private double sampleDiversity(Simulation sim) {
+		DNA living[] = sim.snakes.stream().filter(s -> !s.isDead).map(s -> s.dna).toArray(DNA[]::new);
+		if (living.length < 2)
+			return 0;
+		double sum = 0;
+		for (int p = 0; p < samplePairs; p++) {
+			int a = random.nextInt(living.length);
+			int b = (a + 1 + random.nextInt(living.length - 1)) % living.length;
+			sum += living[a].hammingDistance(living[b]) / (8. * living[a].length());
+		}
+		return sum / samplePairs;
+	}
+}
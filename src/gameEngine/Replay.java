@@ -0,0 +1,248 @@
+package gameEngine;
+
+import genetics.DNA;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Replay {
+	/**
+	 * Compact recording of one snake episode: genome, its hash, the seed of
+	 * the run and per tick the steering output (16 bit) and nibbles eaten.
+	 * Keyframes with the full snake and nibble state every keyframeInterval
+	 * ticks allow seeking without simulating from tick 0. The snake itself is
+	 * reproduced exactly, nibbles only match at the keyframes since other
+	 * snakes are not recorded.
+	 */
+	public static final int keyframeInterval = 256;
+	public static final double turnScale = Snake.maximumAngularSpeed / Short.MAX_VALUE;
+
+	public long seed;
+	public long genomeHash;
+	public DNA dna;
+	public int length = 0; // recorded ticks
+	public boolean complete = false; // the snake died, nothing is added any more
+	public short turns[] = new short[1024];
+	public byte eats[] = new byte[1024];
+	public int eatValues[] = new int[16]; // summed value per tick with eats
+	public int numEatValues = 0;
+	public ArrayList<Keyframe> keyframes = new ArrayList<Keyframe>();
+
+	/**
+	 * Full state at the start of a tick
+	 */
+	public static class Keyframe {
+		public int tick;
+		public int eatIndex;
+		public long clock;
+		public int width, height;
+		public double angle, score, health, age;
+		public boolean isDead;
+		public double segments[]; // x, y, vx, vy, rad for each segment
+		public double nibbles[]; // x, y, vx, vy for each nibble
+		public long nibbleTimes[];
+
+		/**
+		 * Sets snake and world to this state
+		 */
+		public void restore(Snake snake, World world) {
+			world.width = width;
+			world.height = height;
+			world.reset();
+			world.clock = clock;
+			for (int i = 0; i < nibbleTimes.length; i++)
+				world.getNibbles().add(nibbles[4 * i], nibbles[4 * i + 1], nibbles[4 * i + 2], nibbles[4 * i + 3], nibbleTimes[i]);
+			snake.snakeSegments.clear();
+			for (int i = 0; i < segments.length; i += 5) {
+				PhysicalCircle c = new PhysicalCircle(segments[i], segments[i + 1], segments[i + 4]);
+				c.vx = segments[i + 2];
+				c.vy = segments[i + 3];
+				snake.snakeSegments.add(c);
+			}
+			snake.angle = angle;
+			snake.score = score;
+			snake.health = health;
+			snake.age = age;
+			snake.isDead = isDead;
+		}
+	}
+
+	/**
+	 * Starts a recording for a new snake
+	 */
+	public Replay(Snake snake, World world) {
+		seed = world.config.seed;
+		dna = snake.dna;
+		genomeHash = snake.dna.hash();
+	}
+
+	private Replay() {
+	}
+
+	/**
+	 * Stores a keyframe when the interval is due, call before each tick
+	 */
+	public void recordKeyframe(Snake snake, World world) {
+		if (length % keyframeInterval != 0)
+			return;
+		Keyframe k = new Keyframe();
+		k.tick = length;
+		k.eatIndex = numEatValues;
+		k.clock = world.clock;
+		k.width = world.width;
+		k.height = world.height;
+		k.angle = snake.angle;
+		k.score = snake.score;
+		k.health = snake.health;
+		k.age = snake.age;
+		k.isDead = snake.isDead;
+		k.segments = new double[snake.snakeSegments.size() * 5];
+		for (int i = 0; i < snake.snakeSegments.size(); i++) {
+			PhysicalCircle c = snake.snakeSegments.get(i);
+			k.segments[5 * i] = c.x;
+			k.segments[5 * i + 1] = c.y;
+			k.segments[5 * i + 2] = c.vx;
+			k.segments[5 * i + 3] = c.vy;
+			k.segments[5 * i + 4] = c.rad;
+		}
+		NibblePool n = world.getNibbles();
+		k.nibbles = new double[n.count * 4];
+		k.nibbleTimes = new long[n.count];
+		for (int i = 0; i < n.count; i++) {
+			k.nibbles[4 * i] = n.x[i];
+			k.nibbles[4 * i + 1] = n.y[i];
+			k.nibbles[4 * i + 2] = n.vx[i];
+			k.nibbles[4 * i + 3] = n.vy[i];
+			k.nibbleTimes[i] = n.t[i];
+		}
+		keyframes.add(k);
+	}
+
+	/**
+	 * Records the steering output of this tick
+	 *
+	 * @param angleIncrement
+	 *            output of the brain
+	 * @return the quantized value, which the snake must use so that playback
+	 *         is exact
+	 */
+	public double recordTurn(double angleIncrement) {
+		if (length == turns.length) {
+			turns = Arrays.copyOf(turns, length * 2);
+			eats = Arrays.copyOf(eats, length * 2);
+		}
+		short q = (short) Math.round(angleIncrement / turnScale);
+		turns[length] = q;
+		eats[length] = 0;
+		length++;
+		return q * turnScale;
+	}
+
+	/**
+	 * Records the nibbles eaten in the current tick
+	 */
+	public void recordEat(int count, int value) {
+		if (count == 0)
+			return;
+		eats[length - 1] = (byte) count;
+		if (numEatValues == eatValues.length)
+			eatValues = Arrays.copyOf(eatValues, numEatValues * 2);
+		eatValues[numEatValues++] = value;
+	}
+
+	public double getTurn(int tick) {
+		return turns[tick] * turnScale;
+	}
+
+	/**
+	 * Writes the recording, keyframes included
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeLong(seed);
+		out.writeLong(genomeHash);
+		out.writeInt(dna.length());
+		out.write(dna.toArray());
+		out.writeInt(length);
+		for (int i = 0; i < length; i++) {
+			out.writeShort(turns[i]);
+			out.writeByte(eats[i]);
+		}
+		out.writeInt(numEatValues);
+		for (int i = 0; i < numEatValues; i++)
+			out.writeInt(eatValues[i]);
+		out.writeInt(keyframes.size());
+		for (Keyframe k : keyframes) {
+			out.writeInt(k.tick);
+			out.writeInt(k.eatIndex);
+			out.writeLong(k.clock);
+			out.writeInt(k.width);
+			out.writeInt(k.height);
+			out.writeDouble(k.angle);
+			out.writeDouble(k.score);
+			out.writeDouble(k.health);
+			out.writeDouble(k.age);
+			out.writeBoolean(k.isDead);
+			out.writeInt(k.segments.length);
+			for (double d : k.segments)
+				out.writeDouble(d);
+			out.writeInt(k.nibbleTimes.length);
+			for (double d : k.nibbles)
+				out.writeDouble(d);
+			for (long t : k.nibbleTimes)
+				out.writeLong(t);
+		}
+	}
+
+	/**
+	 * Reads a recording written by write()
+	 */
+	public static Replay read(DataInputStream in) throws IOException {
+		Replay r = new Replay();
+		r.seed = in.readLong();
+		r.genomeHash = in.readLong();
+		byte genome[] = new byte[in.readInt()];
+		in.readFully(genome);
+		r.dna = new DNA(genome);
+		r.length = in.readInt();
+		r.turns = new short[Math.max(1, r.length)];
+		r.eats = new byte[Math.max(1, r.length)];
+		for (int i = 0; i < r.length; i++) {
+			r.turns[i] = in.readShort();
+			r.eats[i] = in.readByte();
+		}
+		r.numEatValues = in.readInt();
+		r.eatValues = new int[Math.max(1, r.numEatValues)];
+		for (int i = 0; i < r.numEatValues; i++)
+			r.eatValues[i] = in.readInt();
+		int n = in.readInt();
+		for (int j = 0; j < n; j++) {
+			Keyframe k = new Keyframe();
+			k.tick = in.readInt();
+			k.eatIndex = in.readInt();
+			k.clock = in.readLong();
+			k.width = in.readInt();
+			k.height = in.readInt();
+			k.angle = in.readDouble();
+			k.score = in.readDouble();
+			k.health = in.readDouble();
+			k.age = in.readDouble();
+			k.isDead = in.readBoolean();
+			k.segments = new double[in.readInt()];
+			for (int i = 0; i < k.segments.length; i++)
+				k.segments[i] = in.readDouble();
+			k.nibbleTimes = new long[in.readInt()];
+			k.nibbles = new double[k.nibbleTimes.length * 4];
+			for (int i = 0; i < k.nibbles.length; i++)
+				k.nibbles[i] = in.readDouble();
+			for (int i = 0; i < k.nibbleTimes.length; i++)
+				k.nibbleTimes[i] = in.readLong();
+			r.keyframes.add(k);
+		}
+		if (r.dna.hash() != r.genomeHash)
+			throw new IOException("Replay genome does not match its hash");
+		return r;
+	}
+}
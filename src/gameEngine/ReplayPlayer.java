@@ -0,0 +1,81 @@
+package gameEngine;
+
+import genetics.DNA;
+import helpers.Config;
+
+public final class ReplayPlayer {
+	/**
+	 * Plays a Replay back in a private world. Only the recorded steering is
+	 * applied, the neural net is evaluated just for display.
+	 */
+	public Replay replay;
+	public World world;
+	public Snake snake;
+	public int tick;
+	private int eatIndex;
+
+	public ReplayPlayer(Replay replay, Config config) {
+		this(replay, replay.dna.copy(), config);
+	}
+
+	/**
+	 * C'tor with a copy of the genome made beforehand, for playback on
+	 * another thread than the simulation, which may move the genome
+	 */
+	public ReplayPlayer(Replay replay, DNA genome, Config config) {
+		this.replay = replay;
+		world = new World(config);
+		Replay.Keyframe first = replay.keyframes.get(0);
+		world.width = first.width;
+		world.height = first.height;
+		snake = new Snake(genome, world);
+		snake.replay = null; // do not record the playback
+		seek(0);
+	}
+
+	/**
+	 * Jumps to a tick: restores the last keyframe before it and plays the rest
+	 *
+	 * @param t
+	 *            tick to jump to, clamped to the recording
+	 */
+	public void seek(int t) {
+		t = Math.max(0, Math.min(t, replay.length));
+		Replay.Keyframe k = replay.keyframes.get(Math.min(t / Replay.keyframeInterval, replay.keyframes.size() - 1));
+		k.restore(snake, world);
+		tick = k.tick;
+		eatIndex = k.eatIndex;
+		while (tick < t)
+			step();
+	}
+
+	/**
+	 * Plays one tick
+	 *
+	 * @return false when the recording has ended
+	 */
+	public boolean step() {
+		if (isFinished())
+			return false;
+		snake.move(world, replay.getTurn(tick));
+		int count = replay.eats[tick];
+		if (count > 0) {
+			snake.grow(count, replay.eatValues[eatIndex++]);
+			// nibbles are only approximated, remove the ones at the head
+			PhysicalCircle head = snake.snakeSegments.get(0);
+			NibblePool n = world.getNibbles();
+			for (int i = n.count - 1; i >= 0; i--) {
+				if (Math.hypot(head.x - n.x[i], head.y - n.y[i]) < head.rad + n.rad - 10)
+					n.remove(i);
+			}
+		}
+		snake.digest(count);
+		world.update(world.width, world.height);
+		tick++;
+		return true;
+	}
+
+	public boolean isFinished() {
+		return tick >= replay.length;
+	}
+}
@@ -0,0 +1,151 @@
+package gameEngine;
+
+import genetics.DNA;
+import helpers.Config;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+public class ScenarioBank {
+	/**
+	 * Fixed, seeded world layouts to evaluate genomes on, so that fitness
+	 * values are comparable: arena size, spawn point and heading of the
+	 * snake, position and velocity of each nibble, and a seed for the
+	 * nibbles that replace eaten ones. Layouts are generated once per
+	 * parameter set and shared read-only by all simulations and threads of
+	 * the process.
+	 *
+	 * Scenario i is stored at i * stride in one float array: width, height,
+	 * x, y, angle, nibble count, then x, y, vx, vy per nibble.
+	 */
+	public final int count;
+	public final int maxNibbles; // per scenario
+	public final int stride;
+	public final float data[];
+	public final long seeds[];
+	public final double difficulty[]; // 0 easy .. 1 hard
+	public final int order[]; // scenario indices from easy to hard
+
+	private static final int header = 6;
+	private static ConcurrentHashMap<String, ScenarioBank> cache = new ConcurrentHashMap<String, ScenarioBank>();
+
+	/**
+	 * Bank for the scenario parameters of a config, generated on first use
+	 */
+	public static ScenarioBank get(Config config) {
+		String key = config.scenarios + " " + config.scenarioSeed + " " + config.worldWidth + " " + config.worldHeight + " " + config.numNibbles + " "
+				+ config.maxNibbles;
+		return cache.computeIfAbsent(key, k -> new ScenarioBank(config));
+	}
+
+	/**
+	 * Generates the layouts: arenas between half and the full world size,
+	 * between 1 and twice numNibbles nibbles
+	 */
+	ScenarioBank(Config config) {
+		count = config.scenarios;
+		maxNibbles = Math.max(1, Math.min(2 * config.numNibbles, config.maxNibbles));
+		stride = header + 4 * maxNibbles;
+		data = new float[count * stride];
+		seeds = new long[count];
+		difficulty = new double[count];
+		Random random = new Random(config.scenarioSeed);
+		double margin = Snake.wallCollisionThreshold + GameLoop.globalCircleRadius;
+		for (int i = 0; i < count; i++) {
+			int o = i * stride;
+			double scale = .5 + .5 * random.nextDouble();
+			int w = (int) (config.worldWidth * scale), h = (int) (config.worldHeight * scale);
+			double x = margin + random.nextDouble() * (w - 2 * margin);
+			double y = margin + random.nextDouble() * (h - 2 * margin);
+			int n = 1 + random.nextInt(maxNibbles);
+			data[o] = w;
+			data[o + 1] = h;
+			data[o + 2] = (float) x;
+			data[o + 3] = (float) y;
+			data[o + 4] = (float) (random.nextDouble() * 2 * Math.PI);
+			data[o + 5] = n;
+			double nearest = Double.POSITIVE_INFINITY;
+			for (int j = 0; j < n; j++) {
+				int p = o + header + 4 * j;
+				double rad = GameLoop.globalCircleRadius;
+				data[p] = (float) (random.nextDouble() * (w - 2 * rad) + rad); // like World.newNibble
+				data[p + 1] = (float) (random.nextDouble() * (h - 2 * rad) + rad);
+				data[p + 2] = (float) (2 * (random.nextDouble() - .5));
+				data[p + 3] = (float) (2 * (random.nextDouble() - .5));
+				nearest = Math.min(nearest, Math.hypot(data[p] - x, data[p + 1] - y));
+			}
+			seeds[i] = random.nextLong();
+			// far first nibble and few nibbles make it hard:
+			difficulty[i] = .5 * Math.min(1, nearest / Math.hypot(w, h)) + .5 * (maxNibbles - n) / (double) maxNibbles;
+		}
+		order = IntStream.range(0, count).boxed().sorted((a, b) -> Double.compare(difficulty[a], difficulty[b]))
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Scenarios a genome is evaluated on: the first ones of the bank, or with
+	 * a curriculum a window that moves from the easiest to the hardest ones
+	 *
+	 * @param progress
+	 *            0 .. 1, position of the curriculum window
+	 */
+	public int[] subset(int size, boolean curriculum, double progress) {
+		size = Math.min(size, count);
+		if (!curriculum) {
+			int s[] = new int[size];
+			for (int i = 0; i < size; i++)
+				s[i] = i;
+			return s;
+		}
+		int start = (int) Math.round(Math.max(0, Math.min(1, progress)) * (count - size));
+		return Arrays.copyOfRange(order, start, start + size);
+	}
+
+	/**
+	 * Plays single snake episodes in scenarios, one per thread: the world is
+	 * reused and only refilled from the bank for each episode
+	 */
+	public static class Runner {
+		final ScenarioBank bank;
+		final World world;
+		final int maxTicks;
+
+		public Runner(ScenarioBank bank, Config config) {
+			this.bank = bank;
+			world = new World(config);
+			maxTicks = config.scenarioTicks;
+		}
+
+		/**
+		 * Plays one episode until the snake dies or scenarioTicks have passed
+		 *
+		 * @return fitness of the snake
+		 */
+		public double play(DNA genome, int scenario) {
+			int o = scenario * bank.stride;
+			float d[] = bank.data;
+			world.reset();
+			world.width = (int) d[o];
+			world.height = (int) d[o + 1];
+			NibblePool nibbles = world.getNibbles();
+			for (int j = 0; j < (int) d[o + 5]; j++) {
+				int p = o + header + 4 * j;
+				nibbles.add(d[p], d[p + 1], d[p + 2], d[p + 3], 0);
+			}
+			Snake snake = new Snake(genome, world);
+			snake.replay = null;
+			snake.snakeSegments.set(0, new PhysicalCircle(d[o + 2], d[o + 3], GameLoop.globalCircleRadius));
+			snake.angle = d[o + 4];
+			world.random.setSeed(bank.seeds[scenario]); // replacements
+			for (int t = 0; t < maxTicks && !snake.isDead; t++) {
+				world.update(world.width, world.height);
+				snake.act(world);
+				snake.commit(world);
+				world.replaceEatenNibbles();
+			}
+			return snake.getFitness();
+		}
+	}
+}
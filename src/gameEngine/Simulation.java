@@ -0,0 +1,582 @@
+package gameEngine;
+
+import genetics.DNA;
+import genetics.EvolutionStrategy;
+import genetics.GeneticAlgorithm;
+import genetics.GenomeArena;
+import genetics.NoveltyArchive;
+import genetics.Optimizer;
+import helpers.Config;
+import statistics.EventLog;
+import statistics.FlightEvents;
+import statistics.StatsTimeline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+public class Simulation {
+	/**
+	 * World, snakes and the genetic algorithm without any graphics.
+	 * GameLoop drives it for the window, headless runs call step() directly.
+	 */
+	public final Config config;
+	public final int numSnakes;
+	public final int numNibbles;
+
+	// Genetics parameter initialization:
+	public double mutationrate = .02;
+	public double currentGeneration = 0;
+	public Optimizer optimizer;
+	public NoveltyArchive archive = null; // behaviors of dead snakes, null without novelty search
+	public PopulationController controller = null; // null for a fixed population and mutation rate
+	public ScenarioBank scenarios = null; // null to select by the fitness in this world
+	private ThreadLocal<ScenarioBank.Runner> scenarioRunners;
+
+	// world and snakes initialization:
+	public World world;
+	public LinkedList<Snake> snakes = new LinkedList<Snake>();
+	public LinkedList<Snake> backupSnakes = new LinkedList<Snake>(); // to resume from single mode
+	public long ticks = 0;
+
+	// Best:
+	public DNA bestDna = null;
+	public double bestscore = 0;
+	public Replay bestReplay = null; // episode that earned bestscore
+
+	// Statistics:
+	public StatsTimeline timeline = new StatsTimeline();
+	public double currentMaxFitness = 0;
+	private long statisticsLastMillis = 0;
+	private long statisticsLastNanos = System.nanoTime();
+	private long statisticsLastTicks = 0;
+	private double statisticsEntry[] = new double[StatsTimeline.CHANNELS];
+
+	// Published state for other threads, see SimulationSnapshot:
+	public boolean publishSnapshots = false;
+	public int publishPeriod = 10; // ticks
+	public volatile SimulationSnapshot snapshot = null;
+	public Consumer<SimulationSnapshot> snapshotListener = null; // called on this thread, must not block
+	private long phaseNanos[] = new long[3]; // world, snakes, reproduction
+	private long publishLastNanos = System.nanoTime();
+	private long publishLastTicks = 0;
+
+	// Mode control:
+	public boolean singleSnakeModeActive = false;
+
+	public static final int checkpointVersion = 1;
+
+	// workers of the first phase of a tick, null to run it on this thread:
+	private ForkJoinPool pool = null;
+	// checkpoint files still being written, joined by close():
+	private final ArrayList<Thread> checkpointWriters = new ArrayList<Thread>();
+
+	// flight recorder events, see FlightEvents. With flightEventsAuto they
+	// are switched on as soon as JFR is up:
+	private boolean flightEvents;
+	private final boolean flightEventsAuto;
+
+	/**
+	 * C'tor
+	 *
+	 * @param config
+	 *            simulation parameters, the seed makes the run reproducible
+	 */
+	public Simulation(Config config) {
+		this.config = config;
+		numSnakes = config.numSnakes;
+		numNibbles = config.numNibbles;
+		world = new World(config);
+		if (config.seed != 0)
+			world.random.setSeed(config.seed);
+		world.width = config.worldWidth;
+		world.height = config.worldHeight;
+		if (config.optimizer.equals("es"))
+			optimizer = new EvolutionStrategy(Snake.getDnaLength(config), numSnakes, world.random.nextLong());
+		else
+			optimizer = new GeneticAlgorithm(world.random);
+		if (!config.eventLog.isEmpty()) {
+			try {
+				world.eventLog = new EventLog(config.eventLog, config.eventLogQueueSize);
+			} catch (IOException e) {
+				System.err.println("Cannot open event log: " + e.getMessage());
+			}
+		}
+		if (config.arena)
+			world.grid = new SpatialGrid(config.arenaCellSize);
+		// dead snakes fade for a while before their genomes are released:
+		world.genomes = new GenomeArena(Snake.getDnaLength(config), 2 * (config.adaptive ? Math.max(numSnakes, config.maxSnakes) : numSnakes) + 64);
+		if (config.threads != 1)
+			pool = config.threads > 1 ? new ForkJoinPool(config.threads) : ForkJoinPool.commonPool();
+		if (config.novelty > 0)
+			archive = new NoveltyArchive(Snake.behaviorLength, config.noveltyArchiveSize, config.noveltyNeighbors, world.random.nextLong());
+		if (config.adaptive)
+			controller = new PopulationController(config, world.random.nextLong());
+		flightEventsAuto = config.flightEvents.equals("auto");
+		flightEvents = config.flightEvents.equals("on");
+		if (config.scenarios > 0) {
+			scenarios = ScenarioBank.get(config);
+			scenarioRunners = ThreadLocal.withInitial(() -> new ScenarioBank.Runner(scenarios, config));
+		}
+	}
+
+	/**
+	 * Waits for pending checkpoint files, flushes and closes the event log
+	 */
+	public void close() {
+		for (Thread t : checkpointWriters) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		checkpointWriters.clear();
+		if (world.eventLog != null)
+			world.eventLog.close();
+		if (pool != null && pool != ForkJoinPool.commonPool())
+			pool.shutdown();
+	}
+
+	/**
+	 * One simulation step: moves nibbles and snakes, replaces dead snakes and
+	 * records statistics. The snakes act in parallel on the state at the
+	 * start of the tick, then their eat intents are committed in list order.
+	 * Since the list is in birth order, a nibble touched by several snakes
+	 * goes to the oldest one, and the outcome is the same for any number of
+	 * threads.
+	 *
+	 * @param width
+	 *            current world width
+	 * @param height
+	 *            current world height
+	 */
+	public void step(int width, int height) {
+		if (flightEventsAuto && !flightEvents)
+			flightEvents = FlightEvents.recorderStarted();
+		FlightEvents.Tick tickEvent = flightEvents ? new FlightEvents.Tick() : null;
+		if (tickEvent != null)
+			tickEvent.begin();
+		// initilize first generation:
+		if (snakes.isEmpty()) {
+			firstGeneration(getPopulationSize());
+			world.newNibble(numNibbles);
+		}
+		int deadCount = 0;
+		int alive = 0;
+		long phaseStart = System.nanoTime();
+		world.update(width, height);
+		if (world.clock - statisticsLastMillis > 1000 && !singleSnakeModeActive) {
+			recordStatistics();
+			if (world.eventLog != null)
+				world.eventLog.stats(world.clock, currentGeneration, currentMaxFitness, bestscore);
+			currentMaxFitness = 0;
+			statisticsLastMillis = world.clock;
+		}
+		long phaseSnakes = System.nanoTime();
+		Snake all[] = snakes.toArray(new Snake[0]);
+		if (world.grid != null)
+			world.grid.build(all, world);
+		act(all);
+		for (Snake s : all) {
+			if (!s.commit(world)) {
+				deadCount++;
+				if (!singleSnakeModeActive) {
+					if (archive != null) {
+						s.novelty = novelty(s);
+						s.noveltyTick = ticks;
+						archive.add(s.getBehavior());
+					}
+					optimizer.reportFitness(s.dna, getSelectionFitness(s));
+				}
+				if (world.eventLog != null)
+					world.eventLog.death(world.clock, s.id, s.dna.hash(), s.deathCause, s.score, s.getFitness(), s.snakeSegments.size());
+				if (flightEvents)
+					recordDeath(s);
+			}
+			if (!s.isDead)
+				alive++;
+			if (s.getFitness() > currentMaxFitness)
+				currentMaxFitness = s.getFitness();
+			if (s.getFitness() > bestscore) {
+				bestscore = s.getFitness();
+				bestDna = s.dna;
+				if (s.replay != null && !singleSnakeModeActive)
+					bestReplay = s.replay;
+			}
+		}
+		world.replaceEatenNibbles();
+		long phaseReproduction = System.nanoTime();
+		FlightEvents.Reproduction reproduction = flightEvents ? new FlightEvents.Reproduction() : null;
+		if (reproduction != null)
+			reproduction.begin();
+		int births = 0;
+		if (deadCount > 0 && singleSnakeModeActive) {
+			singleSnakeModeActive = false;
+			for (Snake s : snakes)
+				release(s);
+			snakes.clear();
+			snakes.addAll(backupSnakes);
+
+		} else {
+			// new snakes
+			births = controller != null && !singleSnakeModeActive ? controller.births(alive) : deadCount;
+			for (int i = 0; i < births; i++)
+				newSnake();
+			int generation = (int) currentGeneration;
+			for (int i = 0; i < deadCount; i++)
+				currentGeneration += 1 / (double) getPopulationSize();
+			if (flightEvents && (int) currentGeneration > generation)
+				recordGeneration();
+		}
+		Iterator<Snake> it = snakes.iterator();
+		while (it.hasNext()) {
+			Snake s = it.next();
+			if (s.deathFade <= 0) {
+				it.remove();
+				release(s);
+			}
+		}
+		if (reproduction != null) {
+			reproduction.end();
+			if (deadCount > 0 && reproduction.shouldCommit()) {
+				reproduction.tick = ticks;
+				reproduction.births = births;
+				reproduction.mutationRate = mutationrate;
+				reproduction.commit();
+			}
+		}
+		ticks++;
+		long phaseEnd = System.nanoTime();
+		if (controller != null && !singleSnakeModeActive)
+			controller.update(this, deadCount, phaseEnd - phaseStart);
+		phaseNanos[0] += phaseSnakes - phaseStart;
+		phaseNanos[1] += phaseReproduction - phaseSnakes;
+		phaseNanos[2] += phaseEnd - phaseReproduction;
+		if (publishSnapshots && ticks - publishLastTicks >= publishPeriod)
+			publish(phaseEnd);
+		if (tickEvent != null) {
+			tickEvent.end();
+			if (tickEvent.shouldCommit()) {
+				tickEvent.tick = ticks - 1;
+				tickEvent.snakes = snakes.size();
+				tickEvent.deaths = deadCount;
+				tickEvent.births = births;
+				tickEvent.commit();
+			}
+		}
+	}
+
+	/**
+	 * Flight recorder event of a death, only filled in while recording
+	 */
+	private void recordDeath(Snake s) {
+		FlightEvents.Death e = new FlightEvents.Death();
+		if (!e.isEnabled())
+			return;
+		e.snake = s.id;
+		e.genomeHash = s.dna.hash();
+		e.cause = EventLog.causes[s.deathCause];
+		e.score = s.score;
+		e.fitness = s.getFitness();
+		e.length = s.snakeSegments.size();
+		e.ticksAlive = s.ticksAlive;
+		e.commit();
+	}
+
+	private void recordGeneration() {
+		FlightEvents.Generation e = new FlightEvents.Generation();
+		if (!e.isEnabled())
+			return;
+		e.generation = (int) currentGeneration;
+		e.tick = ticks;
+		e.population = snakes.size();
+		e.maxFitness = currentMaxFitness;
+		e.meanFitness = getMeanFitness();
+		e.bestFitness = bestscore;
+		e.mutationRate = mutationrate;
+		e.commit();
+	}
+
+	/**
+	 * First phase of the tick, see Snake.act
+	 */
+	private void act(Snake all[]) {
+		if (pool == null) {
+			for (Snake s : all)
+				s.act(world);
+		} else {
+			pool.submit(() -> IntStream.range(0, all.length).parallel().forEach(i -> all[i].act(world))).join();
+		}
+	}
+
+	/**
+	 * Publishes a snapshot with the averages since the last one
+	 */
+	private void publish(long now) {
+		double n = ticks - publishLastTicks;
+		double tps = n * 1e9 / Math.max(1, now - publishLastNanos);
+		snapshot = new SimulationSnapshot(this, tps, phaseNanos[0] / n, phaseNanos[1] / n, phaseNanos[2] / n);
+		if (snapshotListener != null)
+			snapshotListener.accept(snapshot);
+		Arrays.fill(phaseNanos, 0);
+		publishLastTicks = ticks;
+		publishLastNanos = now;
+	}
+
+	/**
+	 * Adds the statistics of the last interval to the timeline
+	 */
+	private void recordStatistics() {
+		double fitness[] = new double[snakes.size()];
+		double length = 0;
+		int i = 0;
+		for (Snake s : snakes) {
+			fitness[i++] = s.getFitness();
+			length += s.snakeSegments.size();
+		}
+		Arrays.sort(fitness);
+		long now = System.nanoTime();
+		statisticsEntry[StatsTimeline.MAX] = currentMaxFitness;
+		statisticsEntry[StatsTimeline.MEAN] = getMeanFitness();
+		statisticsEntry[StatsTimeline.P50] = fitness.length > 0 ? fitness[fitness.length / 2] : 0;
+		statisticsEntry[StatsTimeline.P90] = fitness.length > 0 ? fitness[fitness.length * 9 / 10] : 0;
+		statisticsEntry[StatsTimeline.LENGTH] = fitness.length > 0 ? length / fitness.length : 0;
+		statisticsEntry[StatsTimeline.TICKRATE] = (ticks - statisticsLastTicks) * 1e9 / Math.max(1, now - statisticsLastNanos);
+		timeline.record(statisticsEntry);
+		statisticsLastNanos = now;
+		statisticsLastTicks = ticks;
+	}
+
+	/**
+	 * Saves the evolution so far: counters, the best genome and episode and
+	 * the genomes of the population. Call between ticks, the data is copied
+	 * here and written to a temporary file of its own and renamed on a
+	 * background thread, so the simulation does not wait for the disk.
+	 * close() waits until the file is complete
+	 */
+	public void checkpoint(String path) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(checkpointVersion);
+			out.writeUTF(config.toString());
+			out.writeLong(ticks);
+			out.writeDouble(currentGeneration);
+			out.writeDouble(mutationrate);
+			out.writeDouble(bestscore);
+			out.writeBoolean(bestDna != null);
+			if (bestDna != null)
+				out.write(bestDna.toArray());
+			out.writeBoolean(bestReplay != null);
+			if (bestReplay != null)
+				bestReplay.write(out);
+			LinkedList<Snake> population = singleSnakeModeActive ? backupSnakes : snakes;
+			out.writeInt(population.size());
+			for (Snake s : population) {
+				out.writeDouble(s.getFitness());
+				out.write(s.dna.toArray());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // no I/O in memory
+		}
+		checkpointWriters.removeIf(w -> !w.isAlive());
+		Thread previous = checkpointWriters.isEmpty() ? null : checkpointWriters.get(checkpointWriters.size() - 1);
+		Thread t = new Thread(() -> {
+			Path file = new File(path).getAbsoluteFile().toPath();
+			Path temporary = null;
+			try {
+				temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+				Files.write(temporary, bytes.toByteArray());
+				if (previous != null)
+					previous.join(); // the latest checkpoint wins
+				Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				System.err.println("Checkpoint written to " + path);
+			} catch (IOException | InterruptedException e) {
+				System.err.println("Cannot write checkpoint: " + e.getMessage());
+				try {
+					if (temporary != null)
+						Files.deleteIfExists(temporary);
+				} catch (IOException ignored) {
+					// nothing left to do
+				}
+			}
+		}, "checkpoint");
+		checkpointWriters.add(t);
+		t.start();
+	}
+
+	/**
+	 * Switches to single snake mode with the best snake so far
+	 */
+	public void watchBest() {
+		if (!singleSnakeModeActive) {
+			singleSnakeModeActive = true;
+			backupSnakes.clear();
+			backupSnakes.addAll(snakes);
+			snakes.clear();
+			snakes.add(new Snake(bestDna.copy(), world));
+		}
+	}
+
+	/**
+	 * initializes snake array with n fresh snakes
+	 *
+	 * @param n
+	 *            amount of snakes
+	 */
+	public void firstGeneration(int n) {
+		for (Snake s : snakes)
+			release(s);
+		snakes.clear();
+		for (int i = 0; i < n; i++) {
+			snakes.add(new Snake(null, world));
+			logBirth(snakes.getLast());
+		}
+		if (scenarios != null)
+			evaluateScenarios(snakes.toArray(new Snake[0]));
+		world.reset();
+	}
+
+	/**
+	 * Creates a new snake using the optimizer and adds it to the snake-list
+	 */
+	public void newSnake() {
+		// without a controller, keep the last rate until a snake has some fitness
+		if (controller == null && currentMaxFitness > 0)
+			mutationrate = config.mutationScale / currentMaxFitness;
+		DNA population[] = new DNA[snakes.size()];
+		double fitness[] = new double[snakes.size()];
+		if (archive != null)
+			updateNovelty();
+		int i = 0;
+		for (Snake s : snakes) {
+			population[i] = s.dna;
+			fitness[i++] = getSelectionFitness(s);
+		}
+		snakes.add(new Snake(optimizer.nextGenome(population, fitness, mutationrate), world));
+		logBirth(snakes.getLast());
+		if (scenarios != null)
+			evaluateScenarios(snakes.getLast());
+	}
+
+	/**
+	 * Scenario fitness of new snakes: the mean over the current subset of the
+	 * bank. The episodes run in parallel like the first phase of a tick, each
+	 * in the private world of its thread
+	 */
+	private void evaluateScenarios(Snake... born) {
+		int subset[] = scenarios.subset(config.scenarioSubset, config.scenarioCurriculum, currentGeneration / config.curriculumGenerations);
+		double fitness[] = new double[born.length * subset.length];
+		IntConsumer episode = i -> fitness[i] = scenarioRunners.get().play(born[i / subset.length].dna, subset[i % subset.length]);
+		if (pool == null)
+			IntStream.range(0, fitness.length).forEach(episode);
+		else
+			pool.submit(() -> IntStream.range(0, fitness.length).parallel().forEach(episode)).join();
+		for (int s = 0; s < born.length; s++) {
+			double sum = 0;
+			for (int i = 0; i < subset.length; i++)
+				sum += fitness[s * subset.length + i];
+			born[s].scenarioFitness = sum / subset.length;
+		}
+	}
+
+	/**
+	 * Novelty of the living snakes against the archive, once per tick. The
+	 * queries run in parallel like the first phase of the tick
+	 */
+	private void updateNovelty() {
+		Snake all[] = snakes.stream().filter(s -> s.noveltyTick != ticks).toArray(Snake[]::new);
+		if (pool == null) {
+			for (Snake s : all)
+				s.novelty = novelty(s);
+		} else {
+			pool.submit(() -> IntStream.range(0, all.length).parallel().forEach(i -> all[i].novelty = novelty(all[i]))).join();
+		}
+		for (Snake s : all)
+			s.noveltyTick = ticks;
+	}
+
+	/**
+	 * Living snakes have no cause of death yet, they are compared by the
+	 * visited cells only
+	 */
+	private double novelty(Snake s) {
+		return archive.novelty(s.getBehavior(), s.isDead ? Snake.behaviorLength : Snake.behaviorCells * Snake.behaviorCells);
+	}
+
+	/**
+	 * Fitness the optimizer selects by: the fitness in this world or in the
+	 * scenarios, with novelty search blended with the novelty, where the most
+	 * novel behavior counts like the best score so far
+	 */
+	public double getSelectionFitness(Snake s) {
+		double fitness = scenarios != null ? s.scenarioFitness : s.getFitness();
+		if (archive == null)
+			return fitness;
+		double w = config.novelty;
+		return (1 - w) * fitness + w * Math.max(1, bestscore) * Math.min(1, s.novelty / 2);
+	}
+
+	/**
+	 * Frees the arena slot of a removed snake. The genome moves to the heap
+	 * when it is the best one or belongs to the best replay, the only replay
+	 * that outlives its snake, and the network follows it. Otherwise the
+	 * network lets go of the slot, which the next genome takes over
+	 */
+	private void release(Snake s) {
+		if (s.dna.slot < 0)
+			return;
+		boolean keep = s.dna == bestDna || (s.replay != null && s.replay == bestReplay);
+		world.genomes.release(s.dna, keep);
+		if (keep)
+			s.reloadFromDNA();
+		else
+			s.brainNet.detach();
+	}
+
+	private void logBirth(Snake s) {
+		if (world.eventLog != null)
+			world.eventLog.birth(world.clock, s.id, s.dna.hash());
+		if (flightEvents) {
+			FlightEvents.Birth e = new FlightEvents.Birth();
+			if (e.isEnabled()) {
+				e.snake = s.id;
+				e.genomeHash = s.dna.hash();
+				e.genomeBytes = s.dna.length();
+				e.commit();
+			}
+		}
+	}
+
+	/**
+	 * Number of snakes the population is kept at
+	 */
+	public int getPopulationSize() {
+		return controller != null ? controller.populationTarget : numSnakes;
+	}
+
+	/**
+	 * Mean fitness of the living snakes
+	 */
+	public double getMeanFitness() {
+		if (snakes.isEmpty())
+			return 0;
+		double sum = 0;
+		for (Snake s : snakes)
+			sum += s.getFitness();
+		return sum / snakes.size();
+	}
+}
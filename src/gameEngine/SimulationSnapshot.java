@@ -0,0 +1,91 @@
+package gameEngine;
+
+public class SimulationSnapshot {
+	/**
+	 * Immutable copy of the simulation state, published by the simulation
+	 * thread for readers on other threads (dashboard, exporters)
+	 */
+	public final long ticks;
+	public final long clock;
+	public final double generation;
+	public final double bestscore;
+	public final double currentMaxFitness;
+	public final double mutationrate;
+	public final double ticksPerSecond;
+	public final int population;
+	// population controller, see PopulationController:
+	public final int populationTarget;
+	public final double diversity;
+	public final double evaluationsPerSecond;
+	public final double secondsPerGeneration;
+	public final long controllerDecisions;
+	// average nanoseconds per tick of each phase since the last snapshot:
+	public final double worldNanos;
+	public final double snakesNanos;
+	public final double reproductionNanos;
+	// currently best living snake:
+	public final long bestSnakeId;
+	public final double bestSnakeScore;
+	public final float bestSnakeHue;
+	public final double bestSnakeSegments[]; // x, y, rad for each segment
+	public final byte bestSnakeGenome[]; // null without a living snake
+	public final double bestSnakeActivations[][]; // outputs of each network stage
+	public final double nibbles[]; // x, y for each nibble
+	public final int width, height;
+
+	SimulationSnapshot(Simulation sim, double ticksPerSecond, double worldNanos, double snakesNanos, double reproductionNanos) {
+		ticks = sim.ticks;
+		clock = sim.world.clock;
+		generation = sim.currentGeneration;
+		bestscore = sim.bestscore;
+		currentMaxFitness = sim.currentMaxFitness;
+		mutationrate = sim.mutationrate;
+		this.ticksPerSecond = ticksPerSecond;
+		population = sim.snakes.size();
+		populationTarget = sim.getPopulationSize();
+		PopulationController pc = sim.controller;
+		diversity = pc != null ? pc.diversity : 0;
+		evaluationsPerSecond = pc != null ? pc.evaluationsPerSecond : 0;
+		secondsPerGeneration = pc != null ? pc.secondsPerGeneration : 0;
+		controllerDecisions = pc != null ? pc.decisions : 0;
+		this.worldNanos = worldNanos;
+		this.snakesNanos = snakesNanos;
+		this.reproductionNanos = reproductionNanos;
+		Snake best = null;
+		for (Snake s : sim.snakes) {
+			if (!s.isDead && (best == null || s.getFitness() > best.getFitness()))
+				best = s;
+		}
+		if (best != null) {
+			bestSnakeId = best.id;
+			bestSnakeScore = best.getFitness();
+			bestSnakeHue = best.hue;
+			bestSnakeSegments = new double[best.snakeSegments.size() * 3];
+			for (int i = 0; i < best.snakeSegments.size(); i++) {
+				PhysicalCircle c = best.snakeSegments.get(i);
+				bestSnakeSegments[3 * i] = c.x;
+				bestSnakeSegments[3 * i + 1] = c.y;
+				bestSnakeSegments[3 * i + 2] = c.rad;
+			}
+			bestSnakeGenome = best.dna.toArray();
+			bestSnakeActivations = new double[best.brainNet.stages.length][];
+			for (int i = 0; i < bestSnakeActivations.length; i++)
+				bestSnakeActivations[i] = best.brainNet.stages[i].output.clone();
+		} else {
+			bestSnakeId = -1;
+			bestSnakeScore = 0;
+			bestSnakeHue = 0;
+			bestSnakeSegments = new double[0];
+			bestSnakeGenome = null;
+			bestSnakeActivations = null;
+		}
+		NibblePool n = sim.world.getNibbles();
+		nibbles = new double[n.count * 2];
+		for (int i = 0; i < n.count; i++) {
+			nibbles[2 * i] = n.x[i];
+			nibbles[2 * i + 1] = n.y[i];
+		}
+		width = sim.world.width;
+		height = sim.world.height;
+	}
+}
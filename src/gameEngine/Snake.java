@@ -1,14 +1,15 @@
 package gameEngine;
 
 import genetics.DNA;
+import helpers.Config;
 import helpers.DoubleMath;
 
 import java.awt.Color;
 import java.awt.Graphics;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
+import neuralNetwork.Activation;
 import neuralNetwork.NeuralNet;
 import neuralNetwork.Stage;
 
@@ -18,20 +19,37 @@ public class Snake {
 	public static final double maximumForwardSpeed = 5;
 	public static final double maximumAngularSpeed = Math.PI / 32d;
 	public static final double wallCollisionThreshold = 4;
+	// bodies longer than this use the BodyGrid for self collisions:
+	public static final int bodyGridThreshold = 48;
 	// view constants:
-	public static final double maximumSightDistance = 600;
 	public static final double fieldOfView = Math.PI * 2 / 3;
 	// neural net constants:
-	public static final int FOVDIVISIONS = 8;
-	public static final int FIRSTSTAGESIZE = FOVDIVISIONS * 2 * 3;
-	public static final int stageSizes[] = new int[] { FIRSTSTAGESIZE, 16, 16, 2 };
 	public static final boolean isNNSymmetric = false;
+	// view and neural net parameters, read from the configuration:
+	public final double maximumSightDistance;
+	public final int fovDivisions;
+	public final int firstStageSize;
+	public final int stageSizes[];
+	public final int pruneThreshold;
+	public final double sparsityThreshold;
 
 	// scoring constants:
 	public static final double nibblebonus = 20;
 	public static final int healthbonus = 10; // Added each time snake eats
 	public static final double healthdecrement = .02; // decremented each loop
 
+	// causes of death:
+	public static final int deathByWall = 1;
+	public static final int deathBySelf = 2;
+	public static final int deathByStarvation = 3;
+	public static final int deathByOtherSnake = 4;
+
+	// behavior descriptor for novelty search: share of the ticks spent in
+	// each cell of a behaviorCells x behaviorCells grid over the world, then
+	// the cause of death one-hot. Two descriptors are at most 2 apart
+	public static final int behaviorCells = 4;
+	public static final int behaviorLength = behaviorCells * behaviorCells + 4;
+
 	// misc:
 	public final boolean displayCuteEyes = false; // try it out yourself :)
 	public final boolean snakeInertia = false;
@@ -47,6 +65,19 @@ public class Snake {
 	public float hue;
 	public double deathFade = 180;
 	public double health;
+	public int deathCause = 0; // first cause of death, 0 while alive
+	public long id; // unique within the world, for logs
+	public int ticksAlive = 0;
+	public Replay replay; // recording of this episode, null when disabled
+	public int arenaIndex = -1; // owner index in the arena grid
+	private BodyGrid body = null;
+	public long eatIntents[] = new long[4]; // handles of the nibbles touched this tick
+	public int eatIntentCount = 0;
+	private boolean aliveAtTickStart = true;
+	public int visits[] = null; // ticks per behavior cell, null without novelty search
+	public double novelty = 0; // see Simulation.updateNovelty()
+	public long noveltyTick = -1; // tick novelty was calculated in
+	public double scenarioFitness = 0; // mean over the scenarios, see Simulation.evaluateScenarios()
 
 	/**
 	 * Initializes a new snake with given DNA
@@ -58,17 +89,25 @@ public class Snake {
 	 */
 
 	public Snake(DNA dna, World world) {
-		double x = Math.random() * (world.width - 2 * wallCollisionThreshold - 2 * GameLoop.globalCircleRadius) + wallCollisionThreshold
+		id = world.snakesBorn++;
+		maximumSightDistance = world.config.maximumSightDistance;
+		fovDivisions = world.config.fovDivisions;
+		firstStageSize = world.config.getFirstStageSize();
+		stageSizes = world.config.getStageSizes();
+		pruneThreshold = world.config.pruneThreshold;
+		sparsityThreshold = world.config.sparsityThreshold;
+		double x = world.random.nextDouble() * (world.width - 2 * wallCollisionThreshold - 2 * GameLoop.globalCircleRadius) + wallCollisionThreshold
 				+ GameLoop.globalCircleRadius;
-		double y = Math.random() * (world.height - 2 * wallCollisionThreshold - 2 * GameLoop.globalCircleRadius) + wallCollisionThreshold
+		double y = world.random.nextDouble() * (world.height - 2 * wallCollisionThreshold - 2 * GameLoop.globalCircleRadius) + wallCollisionThreshold
 				+ GameLoop.globalCircleRadius;
 
-		int dnalength = NeuralNet.calcNumberOfCoeffs(stageSizes, isNNSymmetric) + 1;
 		if (dna == null) {
-			this.dna = new DNA(true, dnalength);
+			this.dna = new DNA(true, getDnaLength(world.config), world.random);
 		} else {
 			this.dna = dna;
 		}
+		if (world.genomes != null)
+			world.genomes.adopt(this.dna);
 		snakeSegments.clear();
 		for (int i = 0; i < 1; i++) {
 			snakeSegments.add(new PhysicalCircle(x, y, GameLoop.globalCircleRadius));
@@ -76,12 +115,28 @@ public class Snake {
 		this.angle = Math.atan2(world.height / 2 - y, world.width / 2 - x);
 		// setup brain:
 		brainNet = new NeuralNet(stageSizes);
+		brainNet.setActivation(Activation.byName(world.config.activation));
 		reloadFromDNA();
 		score = 0;
 		deathFade = 180;
 		isDead = false;
 		health = healthbonus * 3 / 2;
 		age = 0;
+		if (world.config.recordReplays)
+			replay = new Replay(this, world);
+		if (world.config.novelty > 0)
+			visits = new int[behaviorCells * behaviorCells];
+	}
+
+	/**
+	 * DNA length: network coefficients plus one byte for the color
+	 * 
+	 * @param config
+	 *            configuration defining the network size
+	 * @return number of bytes needed
+	 */
+	public static int getDnaLength(Config config) {
+		return NeuralNet.calcNumberOfCoeffs(config.getStageSizes(), isNNSymmetric) + 1;
 	}
 
 	/**
@@ -89,55 +144,153 @@ public class Snake {
 	 */
 	public void reloadFromDNA() {
 		if (isNNSymmetric)
-			brainNet.loadCoeffsSymmetrical(this.dna.data);
+			brainNet.loadCoeffsSymmetrical(this.dna.toArray());
 		else
-			brainNet.loadCoeffs(this.dna.data);
-		this.hue = (float) this.dna.data[this.dna.data.length - 1] / 256f;
+			brainNet.bind(this.dna.data);
+		brainNet.prune(pruneThreshold, sparsityThreshold);
+		this.hue = (float) this.dna.get(this.dna.length() - 1) / 256f;
 	}
 
 	/**
-	 * Movement, aging and collisions
+	 * First phase of a tick: sensing, movement, aging, collisions and the
+	 * nibbles touching the head. Reads the world and changes only the snake
+	 * itself, so it runs for all snakes in parallel
 	 * 
 	 * @param world
 	 *            reference to the world
-	 * @return true when snake died that round.
 	 */
-	public boolean update(World world) {
-		if (isDead) {
+	public void act(World world) {
+		aliveAtTickStart = !isDead;
+		if (isDead)
+			return;
+		move(world, think(world));
+		touchNibbles(world);
+		if (visits != null)
+			visit(world);
+	}
+
+	private void visit(World world) {
+		PhysicalCircle head = snakeSegments.get(0);
+		int cx = Math.max(0, Math.min(behaviorCells - 1, (int) (head.x * behaviorCells / world.width)));
+		int cy = Math.max(0, Math.min(behaviorCells - 1, (int) (head.y * behaviorCells / world.height)));
+		visits[cy * behaviorCells + cx]++;
+	}
+
+	/**
+	 * Behavior descriptor of the episode so far, see behaviorCells
+	 * 
+	 * @return new array of behaviorLength values
+	 */
+	public double[] getBehavior() {
+		double b[] = new double[behaviorLength];
+		int total = 0;
+		for (int v : visits)
+			total += v;
+		for (int i = 0; i < visits.length && total > 0; i++)
+			b[i] = visits[i] / (double) total;
+		if (deathCause > 0)
+			b[visits.length + deathCause - 1] = 1;
+		return b;
+	}
+
+	/**
+	 * Second phase of a tick, called in list order: eats the touched nibbles
+	 * that no earlier snake claimed, then health and fading
+	 * 
+	 * @param world
+	 *            reference to the world
+	 * @return false when snake died that round.
+	 */
+	public boolean commit(World world) {
+		if (!aliveAtTickStart) {
 			deathFade -= .6;
 			return true;
 		}
+		int nibbleEatCount = 0;
+		int value = 0;
+		for (int i = 0; i < eatIntentCount; i++) {
+			int nibble = world.claimNibble(eatIntents[i]);
+			if (nibble >= 0) {
+				value += world.calcValue(nibble);
+				nibbleEatCount++;
+			}
+		}
+		grow(nibbleEatCount, value);
+		if (replay != null)
+			replay.recordEat(nibbleEatCount, value);
+		if (world.eventLog != null && nibbleEatCount > 0)
+			world.eventLog.nibble(world.clock, id, nibbleEatCount, value);
+		digest(nibbleEatCount);
+		if (isDead && replay != null)
+			replay.complete = true;
+		return !isDead;
+	}
+
+	/**
+	 * Sensing and the neural net
+	 * 
+	 * @param world
+	 *            reference to the world
+	 * @return angle increment, quantized when recording
+	 */
+	public double think(World world) {
+		if (replay != null)
+			replay.recordKeyframe(this, world);
+		// long-lived snakes get a compiled network:
+		if (ticksAlive++ == world.config.compileAfterTicks && world.config.compileNetworks)
+			brainNet.compile();
+		// calculate neural net
+		double angleIncrement = brain(world);
+		if (replay != null)
+			angleIncrement = replay.recordTurn(angleIncrement);
+		return angleIncrement;
+	}
+
+	/**
+	 * Steering, movement of the body, wall and self collisions. Depends only
+	 * on the snake itself, the world size and the angle increment, so a
+	 * recorded episode can be played back exactly. In the arena the head also
+	 * collides with the bodies of the other snakes
+	 * 
+	 * @param world
+	 *            reference to the world
+	 * @param angleIncrement
+	 *            steering output of the brain
+	 */
+	public void move(World world, double angleIncrement) {
 		age += .1;
 		double slowdown = 49d / (48d + snakeSegments.size());
 		PhysicalCircle head = snakeSegments.get(0);
-		// calculate neural net
-		double angleIncrement = brain(world);
 
 		angle += slowdown * angleIncrement;
 		angle = DoubleMath.doubleModulo(angle, Math.PI * 2);
 
 		// collision with wall:
 		if (head.x - head.rad < wallCollisionThreshold) {
-			score /= 2;
-			isDead = true;
+			die(deathByWall);
 		}
 		if (head.x + head.rad > world.width - wallCollisionThreshold) {
-			score /= 2;
-			isDead = true;
+			die(deathByWall);
 		}
 		if (head.y - head.rad < wallCollisionThreshold) {
-			score /= 2;
-			isDead = true;
+			die(deathByWall);
 		}
 		if (head.y + head.rad > world.height - wallCollisionThreshold) {
-			score /= 2;
-			isDead = true;
+			die(deathByWall);
 		}
+		if (world.grid != null)
+			collideOthers(world.grid);
 		// Main movement:
 		head.vx = maximumForwardSpeed * slowdown * Math.cos(angle);
 		head.vy = maximumForwardSpeed * slowdown * Math.sin(angle);
 
 		PhysicalCircle previous = head;
+		boolean useBodyGrid = snakeSegments.size() > bodyGridThreshold;
+		if (useBodyGrid) {
+			if (body == null)
+				body = new BodyGrid(2 * GameLoop.globalCircleRadius);
+			body.clear(snakeSegments.size());
+		}
 		for (int i = 0; i < snakeSegments.size(); i++) {
 			PhysicalCircle c = snakeSegments.get(i);
 			if (snakeInertia){
@@ -147,41 +300,165 @@ public class Snake {
 			}
 			
 			c.updatePosition();
-			for (int j = 0; j < i; j++) {
-				c.collideStatic(snakeSegments.get(j));
+			if (useBodyGrid) {
+				collideEarlierSegments(i);
+				body.insert(i, c.x, c.y);
+			} else {
+				for (int j = 0; j < i; j++) {
+					c.collideStatic(snakeSegments.get(j));
+				}
 			}
 			previous = c;
 			if (i > 1 && head.isColliding(c, 0)) {
-				isDead = true;
-				score /= 2;
+				die(deathBySelf);
 				break;
 			}
 		}
-		// Check eaten nibbles:
-		LinkedList<PhysicalCircle> nibblesToRemove = new LinkedList<PhysicalCircle>();
-		int nibbleEatCount = 0;
-		for (PhysicalCircle nibble : world.getNibbles()) {
-			if (head.isColliding(nibble, -10)) {
-				score += world.calcValue(nibble);
-				snakeSegments.add(new PhysicalCircle(snakeSegments.get(snakeSegments.size() - 1).x, snakeSegments.get(snakeSegments.size() - 1).y, nibble.rad));
-				nibblesToRemove.add(nibble);
-				nibbleEatCount++;
+	}
+
+	/**
+	 * Same as collideStatic of segment i with all segments before it, in
+	 * order, but only with the ones in reach. A segment out of reach is not
+	 * changed by collideStatic anyway. When segment i gets pushed, the
+	 * remaining segments are looked up again from its new position.
+	 * 
+	 * @param i
+	 *            index of the segment, the segments before are in the grid
+	 */
+	private void collideEarlierSegments(int i) {
+		PhysicalCircle c = snakeSegments.get(i);
+		double reach = c.rad + GameLoop.globalCircleRadius + 1;
+		int from = 0;
+		boolean pushed = true;
+		while (pushed) {
+			pushed = false;
+			int n = body.query(c.x, c.y, reach, from);
+			int candidates[] = body.getCandidates();
+			for (int k = 0; k < n; k++) {
+				double x = c.x, y = c.y;
+				c.collideStatic(snakeSegments.get(candidates[k]));
+				if (c.x != x || c.y != y) {
+					from = candidates[k] + 1;
+					pushed = true;
+					break;
+				}
 			}
 		}
-		score += nibbleEatCount * nibblebonus;
-		world.newNibble(nibbleEatCount);
-		world.removeNibbles(nibblesToRemove);
+	}
 
-		// health / hunger:
+	/**
+	 * Collision of the head with other snakes at the start of the tick. Both
+	 * die when heads meet, so the outcome does not depend on the order
+	 * 
+	 * @param grid
+	 *            arena grid of this tick
+	 */
+	private void collideOthers(SpatialGrid grid) {
+		PhysicalCircle head = snakeSegments.get(0);
+		double r = head.rad + GameLoop.globalCircleRadius;
+		for (int cy = grid.cellY(head.y - r); cy <= grid.cellY(head.y + r); cy++) {
+			for (int cx = grid.cellX(head.x - r); cx <= grid.cellX(head.x + r); cx++) {
+				int c = cy * grid.columns + cx;
+				for (int k = grid.cellStart[c]; k < grid.cellStart[c + 1]; k++) {
+					if (grid.owner[k] < 0 || grid.owner[k] == arenaIndex)
+						continue;
+					double dx = head.x - grid.x[k], dy = head.y - grid.y[k];
+					if (Math.sqrt(dx * dx + dy * dy) < head.rad + grid.rad[k]) {
+						die(deathByOtherSnake);
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Kills the snake and halves its score
+	 * 
+	 * @param cause
+	 *            one of the deathBy constants
+	 */
+	private void die(int cause) {
+		score /= 2;
+		isDead = true;
+		if (deathCause == 0)
+			deathCause = cause;
+	}
+
+	/**
+	 * Collects the nibbles touching the head as eat intents, the world is
+	 * not changed
+	 * 
+	 * @param world
+	 *            reference to the world
+	 */
+	private void touchNibbles(World world) {
+		PhysicalCircle head = snakeSegments.get(0);
+		NibblePool nibbles = world.getNibbles();
+		eatIntentCount = 0;
+		SpatialGrid grid = world.grid;
+		if (grid == null) {
+			for (int i = 0; i < nibbles.count; i++)
+				touch(nibbles, i);
+			return;
+		}
+		double r = head.rad + GameLoop.globalCircleRadius;
+		for (int cy = grid.cellY(head.y - r); cy <= grid.cellY(head.y + r); cy++) {
+			for (int cx = grid.cellX(head.x - r); cx <= grid.cellX(head.x + r); cx++) {
+				int c = cy * grid.columns + cx;
+				for (int k = grid.cellStart[c]; k < grid.cellStart[c + 1]; k++) {
+					if (grid.owner[k] < 0)
+						touch(nibbles, -1 - grid.owner[k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds an eat intent when the nibble is closer than 10 to touching the
+	 * head, see PhysicalCircle.isColliding
+	 */
+	private void touch(NibblePool nibbles, int i) {
+		PhysicalCircle head = snakeSegments.get(0);
+		double d = Math.sqrt((head.x - nibbles.x[i]) * (head.x - nibbles.x[i]) + (head.y - nibbles.y[i]) * (head.y - nibbles.y[i]));
+		if (d < head.rad + nibbles.rad - 10) {
+			if (eatIntentCount == eatIntents.length)
+				eatIntents = java.util.Arrays.copyOf(eatIntents, eatIntentCount * 2);
+			eatIntents[eatIntentCount++] = nibbles.handle(i);
+		}
+	}
+
+	/**
+	 * Adds segments at the tail and the score for eaten nibbles
+	 * 
+	 * @param count
+	 *            number of nibbles eaten
+	 * @param value
+	 *            summed value of the nibbles
+	 */
+	public void grow(int count, int value) {
+		for (int i = 0; i < count; i++) {
+			PhysicalCircle tail = snakeSegments.get(snakeSegments.size() - 1);
+			snakeSegments.add(new PhysicalCircle(tail.x, tail.y, GameLoop.globalCircleRadius));
+		}
+		score += value;
+		score += count * nibblebonus;
+	}
+
+	/**
+	 * Health / hunger
+	 * 
+	 * @param nibbleEatCount
+	 *            number of nibbles eaten this round
+	 */
+	public void digest(int nibbleEatCount) {
 		health += nibbleEatCount * healthbonus;
 		if (health > 3 * healthbonus) // saturate
 			health = 3 * healthbonus;
 		health -= healthdecrement;
 		if (health <= 0) {
-			isDead = true;
-			score /= 2;
+			die(deathByStarvation);
 		}
-		return !isDead;
 	}
 
 	/**
@@ -214,45 +491,61 @@ public class Snake {
 	 */
 	public double brain(World world) {
 		// init input vector:
-		Thing input[] = new Thing[FOVDIVISIONS * 2];
-		for (int i = 0; i < FOVDIVISIONS * 2; i++)
+		Thing input[] = new Thing[fovDivisions * 2];
+		for (int i = 0; i < fovDivisions * 2; i++)
 			input[i] = new Thing();
-		// nibbles:
-		input = updateVisualInput(input, world.getNibbles(), 2);
+		if (world.grid != null) {
+			// nibbles and other snakes near the head:
+			senseArena(input, world.grid);
+		} else {
+			// nibbles:
+			NibblePool nibbles = world.getNibbles();
+			for (int i = 0; i < nibbles.count; i++)
+				see(input, nibbles.x[i], nibbles.y[i], nibbles.rad, 2);
+		}
 		// snake:
 		input = updateVisualInput(input, snakeSegments, 1);
 		// walls:
 		/*
 		 * (This should be replaced by a better algorithm) It is basically a
 		 * brute force attempt converting the continuous border lines into many
-		 * PhysicalCirle objects to apply the same algorithm When someone comes
-		 * up with a better algorithm, please let me know :)
+		 * points to apply the same algorithm When someone comes up with a
+		 * better algorithm, please let me know :) Points that are out of sight
+		 * anyway are skipped, which keeps large worlds cheap.
 		 */
-		int step = (int) (maximumSightDistance * Math.sin(fieldOfView / (FOVDIVISIONS * 1d))) / 20;
-		LinkedList<PhysicalCircle> walls = new LinkedList<PhysicalCircle>();
-		for (int x = 0; x < world.width; x += step) {
-			walls.add(new PhysicalCircle(x, 0, 1));
-			walls.add(new PhysicalCircle(x, world.height, 1));
+		PhysicalCircle head = snakeSegments.get(0);
+		double range = maximumSightDistance + head.rad;
+		int step = (int) (maximumSightDistance * Math.sin(fieldOfView / (fovDivisions * 1d))) / 20;
+		int from = Math.max(0, (int) Math.ceil((head.x - range) / step) * step);
+		boolean top = head.y < range, bottom = world.height - head.y < range;
+		for (int x = from; x < world.width && x <= head.x + range; x += step) {
+			if (top)
+				see(input, x, 0, 1, 0);
+			if (bottom)
+				see(input, x, world.height, 1, 0);
 		}
-		for (int y = 0; y < world.height; y += step) {
-			walls.add(new PhysicalCircle(0, y, 1));
-			walls.add(new PhysicalCircle(world.width, y, 1));
+		from = Math.max(0, (int) Math.ceil((head.y - range) / step) * step);
+		boolean left = head.x < range, right = world.width - head.x < range;
+		for (int y = from; y < world.height && y <= head.y + range; y += step) {
+			if (left)
+				see(input, 0, y, 1, 0);
+			if (right)
+				see(input, world.width, y, 1, 0);
 		}
-		input = updateVisualInput(input, walls, 0);
 
 		// convert to input vector for neural net
-		double stageA[] = new double[FIRSTSTAGESIZE]; // zeros initialized ;)
+		double stageA[] = new double[firstStageSize]; // zeros initialized ;)
 		if (isNNSymmetric) {
-			for (int i = 0; i < FOVDIVISIONS; i++) {
-				stageA[input[i].type * FOVDIVISIONS + i] = Stage.signalMultiplier * (maximumSightDistance - input[i].distance) / maximumSightDistance;
-				stageA[FIRSTSTAGESIZE - 1 - (input[i + FOVDIVISIONS].type * FOVDIVISIONS + i)] = Stage.signalMultiplier
-						* (maximumSightDistance - input[i + FOVDIVISIONS].distance) / maximumSightDistance;
+			for (int i = 0; i < fovDivisions; i++) {
+				stageA[input[i].type * fovDivisions + i] = Stage.signalMultiplier * (maximumSightDistance - input[i].distance) / maximumSightDistance;
+				stageA[firstStageSize - 1 - (input[i + fovDivisions].type * fovDivisions + i)] = Stage.signalMultiplier
+						* (maximumSightDistance - input[i + fovDivisions].distance) / maximumSightDistance;
 			}
 		} else {
-			for (int i = 0; i < FOVDIVISIONS; i++) {
-				stageA[input[i].type * FOVDIVISIONS * 2 + i] = Stage.signalMultiplier * (maximumSightDistance - input[i].distance) / maximumSightDistance;
-				stageA[input[i + FOVDIVISIONS].type * FOVDIVISIONS * 2 + FOVDIVISIONS * 2 - 1 - i] = Stage.signalMultiplier
-						* (maximumSightDistance - input[i + FOVDIVISIONS].distance) / maximumSightDistance;
+			for (int i = 0; i < fovDivisions; i++) {
+				stageA[input[i].type * fovDivisions * 2 + i] = Stage.signalMultiplier * (maximumSightDistance - input[i].distance) / maximumSightDistance;
+				stageA[input[i + fovDivisions].type * fovDivisions * 2 + fovDivisions * 2 - 1 - i] = Stage.signalMultiplier
+						* (maximumSightDistance - input[i + fovDivisions].distance) / maximumSightDistance;
 			}
 		}
 		double output[] = brainNet.calc(stageA);
@@ -284,21 +577,52 @@ public class Snake {
 		for (PhysicalCircle n : objects) {
 			if (head == n)
 				continue;
-			double a = DoubleMath.signedDoubleModulo(head.getAngleTo(n) - angle, Math.PI * 2);
-			double d = head.getDistanceTo(n);
-			if (a >= 0 && a < fieldOfView) {
-				if (d < input[(int) (a * FOVDIVISIONS / fieldOfView)].distance) {
-					input[(int) (a * FOVDIVISIONS / fieldOfView)].distance = d;
-					input[(int) (a * FOVDIVISIONS / fieldOfView)].type = type;
-				}
-			} else if (a <= 0 && -a < fieldOfView) {
-				if (d < input[(int) (-a * FOVDIVISIONS / fieldOfView) + FOVDIVISIONS].distance) {
-					input[(int) (-a * FOVDIVISIONS / fieldOfView) + FOVDIVISIONS].distance = d;
-					input[(int) (-a * FOVDIVISIONS / fieldOfView) + FOVDIVISIONS].type = type;
+			see(input, n.x, n.y, n.rad, type);
+		}
+		return input;
+	}
+
+	/**
+	 * Updates the input vector with a single object, see updateVisualInput
+	 */
+	private void see(Thing input[], double x, double y, double rad, int type) {
+		PhysicalCircle head = snakeSegments.get(0);
+		double a = DoubleMath.signedDoubleModulo(Math.atan2(y - head.y, x - head.x) - angle, Math.PI * 2);
+		double d = Math.sqrt((head.x - x) * (head.x - x) + (head.y - y) * (head.y - y)) - (head.rad - rad) / 2;
+		if (a >= 0 && a < fieldOfView) {
+			if (d < input[(int) (a * fovDivisions / fieldOfView)].distance) {
+				input[(int) (a * fovDivisions / fieldOfView)].distance = d;
+				input[(int) (a * fovDivisions / fieldOfView)].type = type;
+			}
+		} else if (a <= 0 && -a < fieldOfView) {
+			if (d < input[(int) (-a * fovDivisions / fieldOfView) + fovDivisions].distance) {
+				input[(int) (-a * fovDivisions / fieldOfView) + fovDivisions].distance = d;
+				input[(int) (-a * fovDivisions / fieldOfView) + fovDivisions].type = type;
+			}
+		}
+	}
+
+	/**
+	 * Nibbles and the bodies of other snakes within sight, from the arena grid
+	 * 
+	 * @param input
+	 *            Array of the current things seen by the snake
+	 * @param grid
+	 *            arena grid of this tick
+	 */
+	private void senseArena(Thing input[], SpatialGrid grid) {
+		PhysicalCircle head = snakeSegments.get(0);
+		double r = maximumSightDistance + head.rad;
+		for (int cy = grid.cellY(head.y - r); cy <= grid.cellY(head.y + r); cy++) {
+			for (int cx = grid.cellX(head.x - r); cx <= grid.cellX(head.x + r); cx++) {
+				int c = cy * grid.columns + cx;
+				for (int k = grid.cellStart[c]; k < grid.cellStart[c + 1]; k++) {
+					if (grid.owner[k] == arenaIndex)
+						continue;
+					see(input, grid.x[k], grid.y[k], grid.rad[k], grid.owner[k] < 0 ? 2 : 1);
 				}
 			}
 		}
-		return input;
 	}
 
 	/**
@@ -0,0 +1,118 @@
+package gameEngine;
+
+public class SpatialGrid {
+	/**
+	 * Broad phase of the arena: a uniform grid with the segments of all living
+	 * snakes and the nibbles, bucketed per cell by a counting sort. Positions
+	 * are copied when the grid is built, so every query during the tick sees
+	 * the state at its start, independent of the order in which snakes move.
+	 * Built once per tick by the simulation thread, then read concurrently.
+	 */
+
+	public final double cellSize;
+	public int columns = 1, rows = 1;
+	public int count = 0;
+	// entries sorted by cell, cell c holds cellStart[c] until cellStart[c+1]:
+	public int cellStart[] = new int[2];
+	public double x[] = new double[0];
+	public double y[] = new double[0];
+	public double rad[] = new double[0];
+	public int owner[] = new int[0]; // index of the snake, or -1 - index of the nibble
+
+	// unsorted entries while building:
+	private int cells[] = new int[0];
+	private double bx[] = new double[0], by[] = new double[0], brad[] = new double[0];
+	private int bowner[] = new int[0];
+	private int next[] = new int[0];
+
+	public SpatialGrid(double cellSize) {
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Rebuilds the grid for the current tick
+	 *
+	 * @param snakes
+	 *            snakes of the world, the living ones get their index as
+	 *            arenaIndex
+	 * @param world
+	 *            reference to the world for the size and the nibbles
+	 */
+	public void build(Snake snakes[], World world) {
+		columns = Math.max(1, (int) Math.ceil(world.width / cellSize));
+		rows = Math.max(1, (int) Math.ceil(world.height / cellSize));
+		NibblePool nibbles = world.getNibbles();
+		int n = nibbles.count;
+		for (Snake s : snakes)
+			if (!s.isDead)
+				n += s.snakeSegments.size();
+		if (bx.length < n)
+			grow(Math.max(n, 2 * bx.length));
+		if (cellStart.length != columns * rows + 1) {
+			cellStart = new int[columns * rows + 1];
+			next = new int[columns * rows];
+		} else {
+			java.util.Arrays.fill(cellStart, 0);
+		}
+		count = 0;
+		for (int i = 0; i < snakes.length; i++) {
+			Snake s = snakes[i];
+			s.arenaIndex = i;
+			if (s.isDead)
+				continue;
+			for (PhysicalCircle c : s.snakeSegments)
+				add(c.x, c.y, c.rad, i);
+		}
+		for (int i = 0; i < nibbles.count; i++)
+			add(nibbles.x[i], nibbles.y[i], nibbles.rad, -1 - i);
+		// prefix sums, then scatter in insertion order:
+		for (int c = 0; c < columns * rows; c++) {
+			next[c] = cellStart[c];
+			cellStart[c + 1] += cellStart[c];
+		}
+		for (int i = 0; i < count; i++) {
+			int k = next[cells[i]]++;
+			x[k] = bx[i];
+			y[k] = by[i];
+			rad[k] = brad[i];
+			owner[k] = bowner[i];
+		}
+	}
+
+	private void add(double px, double py, double prad, int o) {
+		int cell = cellY(py) * columns + cellX(px);
+		cells[count] = cell;
+		bx[count] = px;
+		by[count] = py;
+		brad[count] = prad;
+		bowner[count] = o;
+		count++;
+		cellStart[cell + 1]++;
+	}
+
+	private void grow(int n) {
+		cells = new int[n];
+		bx = new double[n];
+		by = new double[n];
+		brad = new double[n];
+		bowner = new int[n];
+		x = new double[n];
+		y = new double[n];
+		rad = new double[n];
+		owner = new int[n];
+	}
+
+	/**
+	 * Column of a position, clamped to the grid
+	 */
+	public int cellX(double px) {
+		return Math.max(0, Math.min(columns - 1, (int) (px / cellSize)));
+	}
+
+	/**
+	 * Row of a position, clamped to the grid
+	 */
+	public int cellY(double py) {
+		return Math.max(0, Math.min(rows - 1, (int) (py / cellSize)));
+	}
+}
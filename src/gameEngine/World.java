@@ -1,9 +1,12 @@
 package gameEngine;
 
+import genetics.GenomeArena;
+import helpers.Config;
+import statistics.EventLog;
+
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.LinkedList;
-import java.util.concurrent.Semaphore;
+import java.util.Random;
 
 public class World {
 	/**
@@ -11,78 +14,107 @@ public class World {
 	 */
 	public int height, width;
 	public long clock;
-	public int maxNibbles = 20;
-	private Semaphore nibbleProtect = new Semaphore(1); // protect nibble list
-														// add/remove with
-														// semaphore
-	private LinkedList<PhysicalCircle> nibbles = new LinkedList<PhysicalCircle>();
+	public Config config;
+	public Random random = new Random(); // all randomness of a run, seed for reproducible runs
+	public EventLog eventLog = null; // optional event stream
+	public SpatialGrid grid = null; // broad phase in the arena, null otherwise
+	public GenomeArena genomes = null; // off-heap genomes of the snakes, null to keep them on the heap
+	public long snakesBorn = 0;
+	public final int maxNibbles;
+	// nibbles change only between the phases of a tick, on the simulation
+	// thread:
+	private NibblePool nibbles;
+	private boolean eaten[]; // claimed this tick, by index
+	private int eatenCount = 0;
+
+	public World(Config config) {
+		this.config = config;
+		maxNibbles = config.maxNibbles;
+		nibbles = new NibblePool(maxNibbles);
+		eaten = new boolean[maxNibbles];
+	}
 
 	public void newNibble(int n) {
-		try {
-			nibbleProtect.acquire();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		double rad = nibbles.rad;
 		for (int i = 0; i < n; i++) {
-			if (nibbles.size() >= maxNibbles)
+			if (nibbles.count >= maxNibbles)
 				break;
-			PhysicalCircle nibble = new PhysicalCircle(0, 0, GameLoop.globalCircleRadius);
-			nibble.x = Math.random() * (width - 2 * nibble.rad) + nibble.rad;
-			nibble.y = Math.random() * (height - 2 * nibble.rad) + nibble.rad;
+			double x = random.nextDouble() * (width - 2 * rad) + rad;
+			double y = random.nextDouble() * (height - 2 * rad) + rad;
 
-			nibble.vx = 2 * (Math.random() - .5);
-			nibble.vy = 2 * (Math.random() - .5);
-			nibble.t = 0;
-			nibbles.add(nibble);
+			double vx = 2 * (random.nextDouble() - .5);
+			double vy = 2 * (random.nextDouble() - .5);
+			nibbles.add(x, y, vx, vy, 0);
 		}
-		nibbleProtect.release();
 	}
 
-	public LinkedList<PhysicalCircle> getNibbles() {
+	public NibblePool getNibbles() {
 		return nibbles;
 	}
 
-	public int calcValue(PhysicalCircle p) {
-		return (int) (5 + (8d * Math.min(Math.exp(-(double) (p.t - 800) / 2000d), 1)));
+	/**
+	 * @param i
+	 *            index of the nibble
+	 */
+	public int calcValue(int i) {
+		return (int) (5 + (8d * Math.min(Math.exp(-(double) (nibbles.t[i] - 800) / 2000d), 1)));
 	}
 
 	public void update(int w, int h) {
 		this.width = w;
 		this.height = h;
-		for (PhysicalCircle p : nibbles) {
-			p.updatePosition();
-			p.collideWall(50, 50, w - 50, h - 50);
-		}
-		clock += GameLoop.UPDATEPERIOD;
+		nibbles.update(50, 50, w - 50, h - 50);
+		clock += config.updatePeriod;
 	}
 
 	public void draw(Graphics g) {
 		g.setColor(Color.RED);
-		for (PhysicalCircle nibble : nibbles) {
-			g.fillOval((int) (nibble.x - nibble.rad), (int) (nibble.y - nibble.rad), (int) (2 * nibble.rad + 1), (int) (2 * nibble.rad + 1));
+		int d = (int) (2 * nibbles.rad + 1);
+		for (int i = 0; i < nibbles.count; i++) {
+			g.fillOval((int) (nibbles.x[i] - nibbles.rad), (int) (nibbles.y[i] - nibbles.rad), d, d);
 		}
 	}
 
-	public void removeNibbles(LinkedList<PhysicalCircle> rem) {
-		try {
-			nibbleProtect.acquire();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		for (PhysicalCircle p : rem) {
-			nibbles.remove(p);
+	/**
+	 * Claims a nibble for the snake committing its eat intents
+	 * 
+	 * @param handle
+	 *            handle of the nibble, see NibblePool
+	 * @return its index, or -1 when an earlier snake already ate it this tick
+	 */
+	public int claimNibble(long handle) {
+		int i = nibbles.indexOf(handle);
+		if (i < 0 || eaten[i])
+			return -1;
+		eaten[i] = true;
+		eatenCount++;
+		return i;
+	}
+
+	/**
+	 * End of the commit phase: spawns a replacement for each eaten nibble,
+	 * then removes the eaten ones. New nibbles are appended, so the indices
+	 * of the eaten ones stay valid; removing from the back only ever moves
+	 * uneaten nibbles into a gap.
+	 */
+	public void replaceEatenNibbles() {
+		if (eatenCount == 0)
+			return;
+		int n = nibbles.count;
+		newNibble(eatenCount);
+		for (int i = n - 1; i >= 0; i--) {
+			if (eaten[i]) {
+				eaten[i] = false;
+				nibbles.remove(i);
+			}
 		}
-		nibbleProtect.release();
+		eatenCount = 0;
 	}
 
 	public void reset() {
-		try {
-			nibbleProtect.acquire();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
 		nibbles.clear();
-		nibbleProtect.release();
+		java.util.Arrays.fill(eaten, false);
+		eatenCount = 0;
 		clock = 0;
 	}
 }
@@ -1,61 +1,117 @@
 package genetics;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
 public class DNA {
 	/**
-	 * Class to model DNA strands, mutation and crossover
+	 * Class to model DNA strands, mutation and crossover.
+	 * The bytes are held in a ByteBuffer: on the heap for a standalone DNA, or
+	 * a window of the off-heap GenomeArena for the population. Randomness
+	 * comes from the caller, a DNA has no generator of its own.
 	 */
-	public Random random = new Random();
-	public byte data[];
+	public ByteBuffer data;
+	public int slot = -1; // index in the GenomeArena, -1 on the heap
 	
-	public DNA(boolean random, int size){
-		data = new byte[size];
-		
-		for (int i = 0; i < data.length; i++){
-			data[i] = random?(byte)Math.floor(Math.random()*256d):0;
+	/**
+	 * C'tor for a zero DNA on the heap
+	 */
+	public DNA(int size){
+		data = ByteBuffer.allocate(size);
+	}
+	/**
+	 * C'tor with a given random generator for the random initialization, so a
+	 * seeded run is reproducible
+	 */
+	public DNA(boolean random, int size, Random rnd){
+		this(size);
+		if (random){
+			for (int i = 0; i < size; i++){
+				data.put(i, (byte)Math.floor(rnd.nextDouble()*256d));
+			}
 		}
 	}
+	/**
+	 * C'tor copying the given bytes to the heap
+	 */
+	public DNA(byte bytes[]){
+		data = ByteBuffer.wrap(bytes.clone());
+	}
+	public int length(){
+		return bytes().capacity();
+	}
+	public byte get(int i){
+		return bytes().get(i);
+	}
+	public void set(int i, byte b){
+		bytes().put(i, b);
+	}
+	/**
+	 * @return copy of the bytes
+	 */
+	public byte[] toArray(){
+		byte b[] = new byte[length()];
+		data.get(0, b);
+		return b;
+	}
+	/**
+	 * Whether the arena slot was freed without a copy, see GenomeArena.release()
+	 */
+	public boolean isReleased(){
+		return data == null;
+	}
+	private ByteBuffer bytes(){
+		if (data == null)
+			throw new IllegalStateException("genome released");
+		return data;
+	}
+	/**
+	 * @return independent copy on the heap
+	 */
+	public DNA copy(){
+		return new DNA(toArray());
+	}
 	/**
 	 * Crossover function which combines this DNA with another DNA object.
 	 * Process is done byte-wise and a gaussian noise is added to each byte-value 
 	 * Bits flip according to mutation probability
 	 */
-	public DNA crossoverNoise(DNA other, double mutationprob){  //byte-wise, noise applied to each value
-		DNA newdna = new DNA(false, data.length);
-		int numswaps = data.length/10; 
+	public DNA crossoverNoise(DNA other, double mutationprob, Random random){  //byte-wise, noise applied to each value
+		int length = length();
+		DNA newdna = new DNA(length);
+		int numswaps = length/10; 
 		int swaps[] = new int[numswaps+1];
 		for (int i = 0; i < swaps.length-1; i++){
-			swaps[i] = (int)Math.floor(Math.random()*data.length);
+			swaps[i] = (int)Math.floor(random.nextDouble()*length);
 		}
-		swaps[numswaps] = data.length;  //save last
+		swaps[numswaps] = length;  //save last
 		Arrays.sort(swaps);
 		int swapidx = 0;
 		boolean that = true;
-		for (int i = 0; i < data.length; i++){
+		for (int i = 0; i < length; i++){
 			if (i >= swaps[swapidx]){
 				swapidx++;
 				that = !that;
 			}
 			byte d = 0;
 			if (that){
-				d = this.data[i];
+				d = this.get(i);
 			}
 			else {
-				d = other.data[i];
+				d = other.get(i);
 			}
 			d += (byte)(random.nextGaussian()*mutationprob*256);
-			newdna.data[i] = d;
+			newdna.set(i, d);
 		}
 		return newdna;
 	}
 	/**
 	 * Gaussian mutation function
 	 */
-	public void mutateNoise(double prob, double mag){
-		for (int i = 0; i < data.length; i++){
-			if (Math.random() < prob) data[i] += (byte)(random.nextGaussian()*mag*256);
+	public void mutateNoise(double prob, double mag, Random random){
+		for (int i = 0; i < length(); i++){
+			if (random.nextDouble() < prob) set(i, (byte)(get(i) + (byte)(random.nextGaussian()*mag*256)));
 		}
 	}
 	/**
@@ -63,31 +119,32 @@ public class DNA {
 	 * Process is done bit-wise
 	 * Bits flip according to mutation probability
 	 */
-	public DNA crossover(DNA other, double mutationprob){
-		DNA newdna = new DNA(false, data.length);
-		int numswaps = data.length/8; 
+	public DNA crossover(DNA other, double mutationprob, Random random){
+		int length = length();
+		DNA newdna = new DNA(length);
+		int numswaps = length/8; 
 		int swaps[] = new int[numswaps+1];
 		for (int i = 0; i < swaps.length-1; i++){
-			swaps[i] = (int)Math.floor(Math.random()*8*data.length);
+			swaps[i] = (int)Math.floor(random.nextDouble()*8*length);
 		}
-		swaps[numswaps] = 8*data.length;  //save last
+		swaps[numswaps] = 8*length;  //save last
 		Arrays.sort(swaps);
 		int swapidx = 0;
 		boolean that = true;
-		for (int i = 0; i < 8*data.length; i++){
+		for (int i = 0; i < 8*length; i++){
 			if (i >= swaps[swapidx]){
 				swapidx++;
 				that = !that;
 			}
 			int bit = 0;
 			if (that){
-				bit = ((this.data[i/8] >> (i%8)) & 1);
+				bit = ((this.get(i/8) >> (i%8)) & 1);
 			}
 			else {
-				bit = ((other.data[i/8] >> (i%8)) & 1);
+				bit = ((other.get(i/8) >> (i%8)) & 1);
 			}
-			if (Math.random() < mutationprob) bit = 1-bit;
-			newdna.data[i/8] |= (bit << (i%8));
+			if (random.nextDouble() < mutationprob) bit = 1-bit;
+			newdna.set(i/8, (byte)(newdna.get(i/8) | (bit << (i%8))));
 		}
 		return newdna;
 	}
@@ -96,32 +153,59 @@ public class DNA {
 	 * Process is only done byte-wise, so less noise is added
 	 * Bits flip according to mutation probability
 	 */
-	public DNA crossoverBytewise(DNA other, double mutationprob){
-		DNA newdna = new DNA(false, data.length);
-		int numswaps = data.length/8; 
+	public DNA crossoverBytewise(DNA other, double mutationprob, Random random){
+		int length = length();
+		DNA newdna = new DNA(length);
+		int numswaps = length/8; 
 		int swaps[] = new int[numswaps+1];
 		for (int i = 0; i < swaps.length-1; i++){
-			swaps[i] = 8*(int)Math.floor(Math.random()*data.length);
+			swaps[i] = 8*(int)Math.floor(random.nextDouble()*length);
 		}
-		swaps[numswaps] = 8*data.length;  //save last
+		swaps[numswaps] = 8*length;  //save last
 		Arrays.sort(swaps);
 		int swapidx = 0;
 		boolean that = true;
-		for (int i = 0; i < 8*data.length; i++){
+		for (int i = 0; i < 8*length; i++){
 			if (i >= swaps[swapidx]){
 				swapidx++;
 				that = !that;
 			}
 			int bit = 0;
 			if (that){
-				bit = ((this.data[i/8] >> (i%8)) & 1);
+				bit = ((this.get(i/8) >> (i%8)) & 1);
 			}
 			else {
-				bit = ((other.data[i/8] >> (i%8)) & 1);
+				bit = ((other.get(i/8) >> (i%8)) & 1);
 			}
-			if (Math.random() < mutationprob) bit = 1-bit;
-			newdna.data[i/8] |= (bit << (i%8));
+			if (random.nextDouble() < mutationprob) bit = 1-bit;
+			newdna.set(i/8, (byte)(newdna.get(i/8) | (bit << (i%8))));
 		}
 		return newdna;
 	}
+	/**
+	 * 64 bit FNV-1a hash of the genome, identifies a genome in recordings
+	 */
+	public long hash(){
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < length(); i++){
+			h ^= get(i) & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+	/**
+	 * Number of differing bits, for diversity measurements
+	 */
+	public int hammingDistance(DNA other){
+		int n = Math.min(length(), other.length());
+		int d = 0;
+		int i = 0;
+		for (; i + 8 <= n; i += 8){
+			d += Long.bitCount(bytes().getLong(i) ^ other.bytes().getLong(i));
+		}
+		for (; i < n; i++){
+			d += Integer.bitCount((get(i) ^ other.get(i)) & 0xff);
+		}
+		return d;
+	}
 }
@@ -0,0 +1,205 @@
+package genetics;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+public class EvolutionStrategy implements Optimizer {
+	/**
+	 * Evolution strategy (OpenAI-ES style) as an alternative to crossover.
+	 * A float parameter vector (the mean) is perturbed with antithetic gaussian
+	 * noise, each perturbation is quantized into a DNA and evaluated by a snake.
+	 * When all candidates of a generation are reported, the mean moves towards
+	 * the better perturbations.
+	 *
+	 * The noise of a candidate is completely defined by its seed, so workers
+	 * evaluating candidates only need to exchange seeds and fitness values, see
+	 * perturb() and update().
+	 */
+	public float mean[];
+	public double sigma = 12; // noise magnitude in coefficient units (-128 .. 127)
+	public double learningRate = .5; // step size in units of sigma
+	public int generation = 0;
+
+	private Random random;
+	private long seeds[];
+	private double fitnessPlus[];
+	private double fitnessMinus[];
+	private boolean reported[];
+	private int numReported = 0;
+	private int nextCandidate = 0;
+	private IdentityHashMap<DNA, Integer> candidates = new IdentityHashMap<DNA, Integer>();
+
+	/**
+	 * C'tor
+	 *
+	 * @param size
+	 *            DNA length
+	 * @param populationSize
+	 *            candidates per generation, rounded up to an even number
+	 * @param seed
+	 *            seed for the initial mean and the candidate seeds
+	 */
+	public EvolutionStrategy(int size, int populationSize, long seed) {
+		random = new Random(seed);
+		mean = new float[size];
+		for (int i = 0; i < size; i++) {
+			mean[i] = (float) (random.nextDouble() * 256 - 128);
+		}
+		int pairs = Math.max(1, (populationSize + 1) / 2);
+		seeds = new long[pairs];
+		fitnessPlus = new double[pairs];
+		fitnessMinus = new double[pairs];
+		reported = new boolean[pairs * 2];
+		newGeneration();
+	}
+
+	/**
+	 * Draws fresh seeds for the next generation
+	 */
+	private void newGeneration() {
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = random.nextLong();
+		}
+		Arrays.fill(reported, false);
+		numReported = 0;
+		nextCandidate = 0;
+		candidates.clear();
+	}
+
+	/**
+	 * Fills the array with the standard normal noise belonging to the seed
+	 *
+	 * @param seed
+	 *            noise seed
+	 * @param noise
+	 *            array to fill
+	 */
+	public static void noise(long seed, float noise[]) {
+		Random r = new Random(seed);
+		for (int i = 0; i < noise.length; i++) {
+			noise[i] = (float) r.nextGaussian();
+		}
+	}
+
+	/**
+	 * Creates the genome mean + sign * sigma * noise(seed), quantized to bytes
+	 *
+	 * @param sign
+	 *            +1 or -1 (antithetic sampling)
+	 * @return quantized genome
+	 */
+	public static DNA perturb(float mean[], double sigma, long seed, int sign) {
+		float eps[] = new float[mean.length];
+		noise(seed, eps);
+		DNA dna = new DNA(mean.length);
+		for (int i = 0; i < mean.length; i++) {
+			dna.set(i, quantize(mean[i] + sign * sigma * eps[i]));
+		}
+		return dna;
+	}
+
+	/**
+	 * Rounds and saturates a coefficient to the byte range
+	 */
+	public static byte quantize(double v) {
+		long q = Math.round(v);
+		if (q > 127)
+			q = 127;
+		if (q < -128)
+			q = -128;
+		return (byte) q;
+	}
+
+	/**
+	 * Moves the mean towards the better perturbations using centered ranks.
+	 * Only seeds and fitness values are needed.
+	 *
+	 * @param mean
+	 *            parameter vector to update
+	 * @param seeds
+	 *            noise seed of each pair
+	 * @param fitnessPlus
+	 *            fitness of mean + sigma * noise
+	 * @param fitnessMinus
+	 *            fitness of mean - sigma * noise
+	 */
+	public static void update(float mean[], double sigma, double learningRate, long seeds[], double fitnessPlus[], double fitnessMinus[]) {
+		int n = seeds.length;
+		// centered ranks over all 2n samples, range -.5 .. .5
+		double all[] = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			all[2 * i] = fitnessPlus[i];
+			all[2 * i + 1] = fitnessMinus[i];
+		}
+		double ranks[] = centeredRanks(all);
+		float step[] = new float[mean.length];
+		float eps[] = new float[mean.length];
+		for (int i = 0; i < n; i++) {
+			double w = ranks[2 * i] - ranks[2 * i + 1];
+			if (w == 0)
+				continue;
+			noise(seeds[i], eps);
+			for (int j = 0; j < mean.length; j++) {
+				step[j] = (float) (step[j] + w * eps[j]);
+			}
+		}
+		for (int j = 0; j < mean.length; j++) {
+			mean[j] = (float) (mean[j] + learningRate * sigma / n * step[j]);
+			if (mean[j] > 127)
+				mean[j] = 127;
+			if (mean[j] < -128)
+				mean[j] = -128;
+		}
+	}
+
+	private static double[] centeredRanks(double values[]) {
+		Integer order[] = new Integer[values.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+		double ranks[] = new double[values.length];
+		for (int i = 0; i < order.length; i++) {
+			ranks[order[i]] = order.length > 1 ? (double) i / (order.length - 1) - .5 : 0;
+		}
+		return ranks;
+	}
+
+	@Override
+	public DNA nextGenome(DNA population[], double fitness[], double mutationrate) {
+		int candidate = nextCandidate;
+		if (candidate >= reported.length) {
+			// all handed out, evaluate unreported candidates a second time
+			candidate = -1;
+			for (int i = 0; i < reported.length; i++) {
+				int c = (nextCandidate + i) % reported.length;
+				if (!reported[c]) {
+					candidate = c;
+					break;
+				}
+			}
+		}
+		nextCandidate++;
+		DNA dna = perturb(mean, sigma, seeds[candidate / 2], candidate % 2 == 0 ? 1 : -1);
+		candidates.put(dna, candidate);
+		return dna;
+	}
+
+	@Override
+	public void reportFitness(DNA dna, double fitness) {
+		Integer candidate = candidates.remove(dna);
+		if (candidate == null || reported[candidate])
+			return; // from an older generation or already evaluated
+		reported[candidate] = true;
+		if (candidate % 2 == 0)
+			fitnessPlus[candidate / 2] = fitness;
+		else
+			fitnessMinus[candidate / 2] = fitness;
+		numReported++;
+		if (numReported == reported.length) {
+			update(mean, sigma, learningRate, seeds, fitnessPlus, fitnessMinus);
+			generation++;
+			newGeneration();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package genetics;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class GeneticAlgorithm implements Optimizer {
+	/**
+	 * Fitness proportional selection out of the living population and bitwise
+	 * crossover, the original optimizer of this simulation
+	 */
+	public Random random;
+
+	public GeneticAlgorithm(Random random) {
+		this.random = random;
+	}
+
+	/**
+	 * Creates the mating pool out of the population
+	 *
+	 * @return Mating pool as list
+	 */
+	public ArrayList<DNA> makeMatingpool(DNA population[], double fitness[]) {
+		ArrayList<DNA> matingpool = new ArrayList<DNA>();
+		// get maximum fitness:
+		double maxscore = 0;
+		for (int i = 0; i < population.length; i++) {
+			if (fitness[i] > maxscore) {
+				maxscore = fitness[i];
+			}
+		}
+		// Add genomes according to fitness
+		for (int i = 0; i < population.length; i++) {
+			int amount = (int) (fitness[i] * 100 / maxscore);
+			for (int j = 0; j < amount; j++) {
+				matingpool.add(population[i]);
+			}
+		}
+		return matingpool;
+	}
+
+	@Override
+	public DNA nextGenome(DNA population[], double fitness[], double mutationrate) {
+		ArrayList<DNA> matingpool = makeMatingpool(population, fitness);
+		int idx1 = (int) (random.nextDouble() * matingpool.size());
+		int idx2 = (int) (random.nextDouble() * matingpool.size());
+		DNA parentA = matingpool.get(idx1);
+		DNA parentB = matingpool.get(idx2);
+		return parentA.crossoverBytewise(parentB, mutationrate, random);
+	}
+
+	@Override
+	public void reportFitness(DNA dna, double fitness) {
+		// selection only looks at the living population
+	}
+}
@@ -0,0 +1,92 @@
+package genetics;
+
+import java.nio.ByteBuffer;
+
+public class GenomeArena {
+	/**
+	 * The genomes of the whole population in one contiguous off-heap block,
+	 * genome i at offset i * genomeLength. An adopted DNA keeps its identity
+	 * but its data becomes a window of the block, so networks bound to it
+	 * read the weights in place. Freed slots are reused, when all slots are
+	 * taken a genome simply stays on the heap.
+	 */
+	public final int genomeLength;
+	public final int capacity;
+	public int used = 0;
+	public long overflows = 0; // genomes that did not fit
+
+	private ByteBuffer block;
+	private int freeSlots[];
+	private int freeCount;
+
+	/**
+	 * C'tor
+	 *
+	 * @param genomeLength
+	 *            bytes per genome
+	 * @param capacity
+	 *            number of genomes
+	 */
+	public GenomeArena(int genomeLength, int capacity) {
+		this.genomeLength = genomeLength;
+		this.capacity = capacity;
+		block = ByteBuffer.allocateDirect(genomeLength * capacity);
+		freeSlots = new int[capacity];
+		for (int i = 0; i < capacity; i++)
+			freeSlots[i] = capacity - 1 - i; // lowest slot on top
+		freeCount = capacity;
+	}
+
+	/**
+	 * Moves a genome into a free slot. Does nothing for genomes already in
+	 * the arena, of another length or when the arena is full
+	 *
+	 * @return true when the genome lives in the arena
+	 */
+	public boolean adopt(DNA dna) {
+		if (dna.slot >= 0)
+			return true;
+		if (dna.length() != genomeLength)
+			return false;
+		if (freeCount == 0) {
+			overflows++;
+			return false;
+		}
+		int slot = freeSlots[--freeCount];
+		ByteBuffer window = block.slice(slot * genomeLength, genomeLength);
+		window.put(0, dna.data, 0, genomeLength);
+		dna.data = window;
+		dna.slot = slot;
+		used++;
+		return true;
+	}
+
+	/**
+	 * Frees the slot of a genome
+	 *
+	 * @param keep
+	 *            true when the DNA is still referenced, it gets a copy of its
+	 *            bytes on the heap. Otherwise any later use of it throws an
+	 *            IllegalStateException; buffers taken from it before, like
+	 *            the one a network is bound to, now belong to the next genome
+	 *            in the slot
+	 */
+	public void release(DNA dna, boolean keep) {
+		if (dna.slot < 0)
+			return;
+		if (keep)
+			dna.data = ByteBuffer.wrap(dna.toArray());
+		else
+			dna.data = null;
+		freeSlots[freeCount++] = dna.slot;
+		dna.slot = -1;
+		used--;
+	}
+
+	/**
+	 * Off-heap bytes held by the arena
+	 */
+	public long getBytes() {
+		return (long) genomeLength * capacity;
+	}
+}
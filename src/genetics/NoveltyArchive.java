@@ -0,0 +1,261 @@
+package genetics;
+
+import java.util.Random;
+
+public class NoveltyArchive {
+	/**
+	 * Bounded archive of behavior descriptors for novelty search. The novelty
+	 * of a behavior is the mean distance to its k nearest neighbors in the
+	 * archive. Neighbors are looked up in a KD-tree with midpoint splits and
+	 * small leaves; entries added since it was built are searched linearly,
+	 * until there are rebuildPeriod or 4 * sqrt(count) of them, whichever is
+	 * more.
+	 * When the archive is full, a random entry is replaced, its old copy in
+	 * the tree is skipped until the next rebuild.
+	 *
+	 * Queries only read, so they may run in parallel as long as nothing is
+	 * added at the same time.
+	 */
+	public final int dims;
+	public final int capacity;
+	public final int k;
+	public int rebuildPeriod = 64;
+	public int count = 0;
+	public long added = 0;
+
+	private Random random;
+	private double points[]; // entry i at i * dims
+	// KD-tree over the entries in tree[], node i covers tree[nodeLo..nodeHi):
+	public int leafSize = 8;
+	private int tree[];
+	private int root = -1;
+	private int nodeCount = 0;
+	private int nodeDim[] = new int[0]; // -1 for leaves
+	private double nodeSplit[];
+	private int nodeLo[], nodeHi[];
+	private int nodeLeft[], nodeRight[];
+	private boolean indexed[]; // entry is in the tree with its current values
+	private int pending[]; // entries searched linearly
+	private int pendingCount = 0;
+	private boolean isPending[];
+
+	/**
+	 * C'tor
+	 *
+	 * @param dims
+	 *            length of the descriptors
+	 * @param capacity
+	 *            maximum number of entries
+	 * @param k
+	 *            number of neighbors
+	 * @param seed
+	 *            seed for choosing the replaced entries
+	 */
+	public NoveltyArchive(int dims, int capacity, int k, long seed) {
+		this.dims = dims;
+		this.capacity = capacity;
+		this.k = k;
+		random = new Random(seed);
+		points = new double[capacity * dims];
+		tree = new int[capacity];
+		indexed = new boolean[capacity];
+		pending = new int[capacity];
+		isPending = new boolean[capacity];
+	}
+
+	/**
+	 * Adds a descriptor, single writer only
+	 */
+	public void add(double descriptor[]) {
+		int e = count < capacity ? count++ : random.nextInt(capacity);
+		System.arraycopy(descriptor, 0, points, e * dims, dims);
+		indexed[e] = false;
+		if (!isPending[e]) {
+			isPending[e] = true;
+			pending[pendingCount++] = e;
+		}
+		added++;
+		if (pendingCount >= Math.max(rebuildPeriod, 4 * Math.sqrt(count)))
+			rebuild();
+	}
+
+	/**
+	 * Builds the tree over all entries
+	 */
+	public void rebuild() {
+		for (int i = 0; i < count; i++) {
+			tree[i] = i;
+			indexed[i] = true;
+			isPending[i] = false;
+		}
+		pendingCount = 0;
+		nodeCount = 0;
+		if (nodeDim.length < 2 * count + 1) {
+			int n = 2 * count + 1;
+			nodeDim = new int[n];
+			nodeSplit = new double[n];
+			nodeLo = new int[n];
+			nodeHi = new int[n];
+			nodeLeft = new int[n];
+			nodeRight = new int[n];
+		}
+		root = count > 0 ? build(0, count) : -1;
+	}
+
+	/**
+	 * Splits [lo, hi) in the middle of the dimension with the largest spread.
+	 * Unlike median splits this separates sparse descriptors, where most
+	 * values are 0
+	 *
+	 * @return node index
+	 */
+	private int build(int lo, int hi) {
+		int node = nodeCount++;
+		nodeLo[node] = lo;
+		nodeHi[node] = hi;
+		nodeDim[node] = -1; // leaf
+		if (hi - lo <= leafSize)
+			return node;
+		int dim = 0;
+		double spread = 0, split = 0;
+		for (int d = 0; d < dims; d++) {
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for (int i = lo; i < hi; i++) {
+				double v = points[tree[i] * dims + d];
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+			if (max - min > spread) {
+				spread = max - min;
+				dim = d;
+				split = min + (max - min) / 2;
+			}
+		}
+		if (spread == 0)
+			return node; // all equal
+		// partition: below split left, the rest right, both not empty
+		int i = lo, j = hi - 1;
+		while (i <= j) {
+			if (points[tree[i] * dims + dim] < split) {
+				i++;
+			} else {
+				int t = tree[i];
+				tree[i] = tree[j];
+				tree[j--] = t;
+			}
+		}
+		nodeDim[node] = dim;
+		nodeSplit[node] = split;
+		nodeLeft[node] = build(lo, i);
+		nodeRight[node] = build(i, hi);
+		return node;
+	}
+
+	/**
+	 * Nearest neighbors found so far, squared distances in ascending order
+	 */
+	private static class Neighbors {
+		double dist[];
+		int size = 0;
+
+		Neighbors(int k) {
+			dist = new double[k];
+		}
+
+		double worst() {
+			return size < dist.length ? Double.POSITIVE_INFINITY : dist[size - 1];
+		}
+
+		void offer(double d) {
+			if (d >= worst())
+				return;
+			int i = size < dist.length ? size++ : size - 1;
+			while (i > 0 && dist[i - 1] > d) {
+				dist[i] = dist[i - 1];
+				i--;
+			}
+			dist[i] = d;
+		}
+
+		double meanDistance() {
+			if (size == 0)
+				return 0;
+			double sum = 0;
+			for (int i = 0; i < size; i++)
+				sum += Math.sqrt(dist[i]);
+			return sum / size;
+		}
+	}
+
+	/**
+	 * Novelty of a behavior
+	 *
+	 * @return mean distance to the k nearest entries, 0 for an empty archive
+	 */
+	public double novelty(double descriptor[]) {
+		return novelty(descriptor, dims);
+	}
+
+	/**
+	 * Novelty of a behavior, only the first values are compared
+	 *
+	 * @param length
+	 *            number of values to compare, the others are ignored
+	 */
+	public double novelty(double descriptor[], int length) {
+		Neighbors n = new Neighbors(k);
+		if (root >= 0)
+			search(descriptor, length, root, n, 0, new double[dims]);
+		for (int i = 0; i < pendingCount; i++)
+			n.offer(distance(descriptor, length, pending[i], n.worst()));
+		return n.meanDistance();
+	}
+
+	/**
+	 * Visits the subtree [lo, hi) when its cell may hold a nearer entry.
+	 * cellDistance is the squared distance to the cell, offsets the distance
+	 * to it along each dimension (incremental distance calculation)
+	 */
+	private void search(double q[], int length, int node, Neighbors n, double cellDistance, double offsets[]) {
+		if (cellDistance >= n.worst())
+			return;
+		int dim = nodeDim[node];
+		if (dim < 0) {
+			for (int i = nodeLo[node]; i < nodeHi[node]; i++)
+				if (indexed[tree[i]])
+					n.offer(distance(q, length, tree[i], n.worst()));
+			return;
+		}
+		double diff = dim < length ? q[dim] - nodeSplit[node] : 0;
+		double old = offsets[dim];
+		search(q, length, diff < 0 ? nodeLeft[node] : nodeRight[node], n, cellDistance, offsets);
+		offsets[dim] = diff;
+		search(q, length, diff < 0 ? nodeRight[node] : nodeLeft[node], n, cellDistance - old * old + diff * diff, offsets);
+		offsets[dim] = old;
+	}
+
+	/**
+	 * Squared distance to an entry, stops early once it exceeds the bound
+	 */
+	private double distance(double q[], int length, int e, double bound) {
+		double sum = 0;
+		int base = e * dims;
+		for (int d = 0; d < length; d++) {
+			double v = q[d] - points[base + d];
+			sum += v * v;
+			if (sum >= bound)
+				return sum;
+		}
+		return sum;
+	}
+
+	/**
+	 * Same like novelty() by comparing with every entry, for benchmarks
+	 */
+	public double noveltyLinear(double descriptor[], int length) {
+		Neighbors n = new Neighbors(k);
+		for (int e = 0; e < count; e++)
+			n.offer(distance(descriptor, length, e, n.worst()));
+		return n.meanDistance();
+	}
+}
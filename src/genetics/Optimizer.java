@@ -0,0 +1,32 @@
+package genetics;
+
+public interface Optimizer {
+	/**
+	 * Interface for the algorithms that breed new genomes out of evaluated ones.
+	 * The game loop asks for a new genome whenever a snake dies and reports the
+	 * fitness each snake reached.
+	 */
+
+	/**
+	 * Creates the genome for the next snake
+	 *
+	 * @param population
+	 *            genomes of the snakes currently alive
+	 * @param fitness
+	 *            current fitness of each snake, same order as population
+	 * @param mutationrate
+	 *            mutation probability suggested by the game loop
+	 * @return new genome
+	 */
+	public DNA nextGenome(DNA population[], double fitness[], double mutationrate);
+
+	/**
+	 * Reports the final fitness of a genome when its snake died
+	 *
+	 * @param dna
+	 *            genome of the dead snake
+	 * @param fitness
+	 *            fitness the snake reached
+	 */
+	public void reportFitness(DNA dna, double fitness);
+}
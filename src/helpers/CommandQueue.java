@@ -0,0 +1,220 @@
+package helpers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CommandQueue {
+	/**
+	 * Commands for a running simulation from any thread: the keyboard, lines
+	 * on standard input or a control socket on the loopback interface. The
+	 * queue is lock-free, producers never wait and no command is lost. The
+	 * simulation thread drains it between ticks, so commands never race a
+	 * tick in progress.
+	 *
+	 * Text commands, one per line: pause, resume, stats, hidestats, watch,
+	 * forward, rewind, checkpoint [file], speed <ticks per period>, headless,
+	 * window. The file of a checkpoint is resolved against
+	 * checkpointDirectory, names that lead out of it are rejected, so that
+	 * the control socket cannot overwrite arbitrary files.
+	 */
+	public static final int PAUSE = 0, RESUME = 1, STATS = 2, HIDE_STATS = 3, WATCH = 4, FORWARD = 5, REWIND = 6, CHECKPOINT = 7, SPEED = 8,
+			HEADLESS = 9, WINDOW = 10;
+	public static final String names[] = { "pause", "resume", "stats", "hidestats", "watch", "forward", "rewind", "checkpoint", "speed", "headless",
+			"window" };
+
+	public final AtomicLong received = new AtomicLong();
+	public final AtomicLong rejected = new AtomicLong(); // lines that were no command
+	// directory of checkpoint files named in text commands, null to only
+	// allow the default file
+	public volatile Path checkpointDirectory = null;
+
+	private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<Command>();
+
+	/**
+	 * One command, value and argument depend on the type
+	 */
+	public static class Command {
+		public final int type;
+		public final double value; // speed
+		public final String argument; // checkpoint file, null for the default
+		public final String source; // keyboard, stdin or socket
+
+		public Command(int type, double value, String argument, String source) {
+			this.type = type;
+			this.value = value;
+			this.argument = argument;
+			this.source = source;
+		}
+
+		public String toString() {
+			return names[type] + (type == SPEED ? " " + value : argument != null ? " " + argument : "");
+		}
+	}
+
+	/**
+	 * Parses a text command
+	 *
+	 * @throws IllegalArgumentException
+	 *             for unknown commands and missing or invalid arguments
+	 */
+	public static Command parse(String line, String source) {
+		String words[] = line.trim().split("\\s+", 2);
+		String name = words[0].toLowerCase();
+		for (int type = 0; type < names.length; type++) {
+			if (!names[type].equals(name))
+				continue;
+			if (type == SPEED) {
+				double speed;
+				try {
+					speed = Double.parseDouble(words.length > 1 ? words[1] : "");
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("speed needs the number of ticks per period");
+				}
+				if (!(speed > 0 && speed <= 1000))
+					throw new IllegalArgumentException("speed must be above 0 and at most 1000");
+				return new Command(type, speed, null, source);
+			}
+			if (type == CHECKPOINT)
+				return new Command(type, 0, words.length > 1 ? words[1] : null, source);
+			return new Command(type, 0, null, source);
+		}
+		throw new IllegalArgumentException("unknown command '" + name + "', expected one of " + String.join(", ", names));
+	}
+
+	/**
+	 * Adds a command, never blocks
+	 */
+	public void offer(Command c) {
+		queue.offer(c);
+		received.incrementAndGet();
+	}
+
+	/**
+	 * Adds a text command
+	 *
+	 * @throws IllegalArgumentException
+	 *             see parse()
+	 */
+	public void offer(String line, String source) {
+		Command c;
+		try {
+			c = parse(line, source);
+			if (c.type == CHECKPOINT && c.argument != null)
+				c = new Command(c.type, 0, checkpointFile(c.argument), source);
+		} catch (IllegalArgumentException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+		offer(c);
+	}
+
+	/**
+	 * @return the checkpoint file name resolved against checkpointDirectory
+	 * @throws IllegalArgumentException
+	 *             when it leads out of the directory
+	 */
+	private String checkpointFile(String name) {
+		Path directory = checkpointDirectory;
+		if (directory == null)
+			throw new IllegalArgumentException("checkpoint takes no file here, it writes the configured checkpointPath");
+		directory = directory.toAbsolutePath().normalize();
+		Path file;
+		try {
+			file = directory.resolve(name).normalize();
+		} catch (InvalidPathException e) {
+			throw new IllegalArgumentException("invalid checkpoint file " + name);
+		}
+		if (!file.startsWith(directory) || file.equals(directory))
+			throw new IllegalArgumentException("checkpoint file must be inside " + directory);
+		return file.toString();
+	}
+
+	/**
+	 * Next command, for the simulation thread
+	 *
+	 * @return null when there is none
+	 */
+	public Command poll() {
+		return queue.poll();
+	}
+
+	/**
+	 * Reads commands line by line on a daemon thread until the stream ends
+	 */
+	public void readFrom(InputStream in, String source) {
+		Thread t = new Thread(() -> {
+			try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = r.readLine()) != null) {
+					if (line.isBlank())
+						continue;
+					try {
+						offer(line, source);
+					} catch (IllegalArgumentException e) {
+						System.err.println("Invalid command: " + e.getMessage());
+					}
+				}
+			} catch (IOException e) {
+				System.err.println("Cannot read commands: " + e.getMessage());
+			}
+		}, "commands-" + source);
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Accepts control connections on the loopback interface, each on its own
+	 * daemon thread. Every line is answered with "ok" or "error: ..."
+	 *
+	 * @return the socket, closing it stops accepting
+	 */
+	public ServerSocket listen(int port) throws IOException {
+		ServerSocket server = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+		Thread t = new Thread(() -> {
+			while (!server.isClosed()) {
+				try {
+					Socket s = server.accept();
+					Thread connection = new Thread(() -> serve(s), "control-connection");
+					connection.setDaemon(true);
+					connection.start();
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		}, "control-socket");
+		t.setDaemon(true);
+		t.start();
+		return server;
+	}
+
+	private void serve(Socket s) {
+		try (Socket socket = s;
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isBlank())
+					continue;
+				try {
+					offer(line, "socket");
+					out.println("ok");
+				} catch (IllegalArgumentException e) {
+					out.println("error: " + e.getMessage());
+				}
+			}
+		} catch (IOException e) {
+			// connection dropped
+		}
+	}
+}
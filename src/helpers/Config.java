@@ -0,0 +1,287 @@
+package helpers;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Properties;
+
+import neuralNetwork.Activation;
+
+public class Config {
+	/**
+	 * Simulation parameters that used to be compile time constants.
+	 * Loaded at startup from a properties file and command line flags, for
+	 * example: --numSnakes=32 --hiddenLayers=24,24 --config=sweep.properties
+	 * Keys are the field names below. Attributes are public for C-Like access.
+	 */
+	public static final String defaultFile = "snake.properties";
+
+	// population:
+	public int numSnakes = 8;
+	public int numNibbles = 4;
+	public int maxNibbles = 20;
+	// world size for headless runs, the window size is used otherwise:
+	public int worldWidth = 1200;
+	public int worldHeight = 800;
+	// main update period in ms:
+	public long updatePeriod = 8;
+	// view:
+	public int fovDivisions = 8;
+	public double maximumSightDistance = 600;
+	// neural net, sizes of the hidden stages; input and output stage are
+	// derived from fovDivisions and the steering output:
+	public int hiddenLayers[] = new int[] { 16, 16 };
+	// optimizer: "ga" for crossover, "es" for evolution strategy
+	public String optimizer = "ga";
+	// mutation rate = mutationScale / current maximum fitness
+	public double mutationScale = 10;
+	// adapt mutation rate and population size instead, see
+	// PopulationController: seconds per generation, target genome diversity
+	// (fraction of differing bits) and population limits
+	public boolean adaptive = false;
+	public double generationSeconds = 10;
+	public double targetDiversity = .1;
+	public int minSnakes = 4;
+	public int maxSnakes = 512;
+	// seed of all randomness in a run, 0 for a random seed
+	public long seed = 0;
+	// record every episode so the best one can be replayed
+	public boolean recordReplays = true;
+	// line delimited JSON log of births, deaths and nibbles, empty for none
+	public String eventLog = "";
+	public int eventLogQueueSize = 65536;
+	// nonlinearity of the networks: exact, lut or rational, see Activation
+	public String activation = "exact";
+	// magnitude pruning of the network weights, 0 for none, and the fraction
+	// of zero weights from which a stage is calculated sparse
+	public int pruneThreshold = 0;
+	public double sparsityThreshold = .6;
+	// compile the networks of snakes that lived longer than compileAfterTicks.
+	// Each compiled network is JIT compiled on its own, which only pays off
+	// for networks that are evaluated many thousand times
+	public boolean compileNetworks = false;
+	public int compileAfterTicks = 2000;
+	// scenario bank, see ScenarioBank: number of fixed layouts, 0 to select
+	// by the fitness in the shared world. New genomes play scenarioSubset of
+	// them, with a curriculum from easy to hard over curriculumGenerations
+	public int scenarios = 0;
+	public int scenarioSubset = 8;
+	public long scenarioSeed = 1;
+	public int scenarioTicks = 3000;
+	public boolean scenarioCurriculum = false;
+	public double curriculumGenerations = 50;
+	// port of the HTTP dashboard on the loopback interface, 0 for none.
+	// httpRemote listens on all interfaces, for scraping from other hosts
+	public int httpPort = 0;
+	public boolean httpRemote = false;
+	// JFR events, see FlightEvents: on, off, or auto for on once JFR is up,
+	// from the command line or a recording started later by jcmd
+	public String flightEvents = "auto";
+	// headless runs stop after this many ticks, 0 to run forever
+	public long maxTicks = 0;
+	// port of the control socket on the loopback interface, see
+	// CommandQueue, 0 for none. Commands are also read from standard input
+	// with stdinCommands, off by default as reading stops background jobs
+	public int controlPort = 0;
+	public boolean stdinCommands = false;
+	// default file of the checkpoint command
+	public String checkpointPath = "checkpoint.bin";
+	// headless frame export, see FrameExporter: directory for png, file for
+	// mjpeg and y4m, empty for none. Source "best" renders the best living
+	// snake every exportPeriod ticks, "replay" each new best episode
+	public String exportPath = "";
+	public String exportFormat = "png";
+	public String exportSource = "best";
+	public int exportPeriod = 10;
+	public int exportThreads = 2;
+	public int exportQueue = 4;
+	// arena: snakes see and collide with each other, neighbors are looked
+	// up in a grid with the given cell size
+	public boolean arena = false;
+	public double arenaCellSize = 100;
+	// workers for the snakes of a tick, 0 for all cores
+	public int threads = 0;
+	// novelty search: weight of the novelty in the selection (0 for none, 1
+	// for novelty only), number of neighbors and archive size
+	public double novelty = 0;
+	public int noveltyNeighbors = 15;
+	public int noveltyArchiveSize = 2000;
+
+	/**
+	 * Loads the configuration: defaults, then the properties file (given by
+	 * --config= or snake.properties when present), then the remaining flags
+	 *
+	 * @param args
+	 *            command line arguments
+	 * @return validated configuration
+	 * @throws IllegalArgumentException
+	 *             on unknown keys, malformed or invalid values
+	 */
+	public static Config load(String args[]) {
+		Config c = new Config();
+		String file = null;
+		for (String a : args) {
+			if (a.startsWith("--config="))
+				file = a.substring("--config=".length());
+		}
+		Properties p = new Properties();
+		if (file != null || new java.io.File(defaultFile).exists()) {
+			try (InputStream in = new FileInputStream(file != null ? file : defaultFile)) {
+				p.load(in);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot read config file: " + e.getMessage());
+			}
+		}
+		for (String a : args) {
+			if (a.startsWith("--config="))
+				continue;
+			int eq = a.indexOf('=');
+			if (!a.startsWith("--") || eq < 0)
+				throw new IllegalArgumentException("Expected --key=value, got " + a);
+			p.setProperty(a.substring(2, eq), a.substring(eq + 1));
+		}
+		for (String key : p.stringPropertyNames()) {
+			c.set(key, p.getProperty(key).trim());
+		}
+		c.validate();
+		return c;
+	}
+
+	/**
+	 * Sets one parameter by name
+	 *
+	 * @param key
+	 *            field name
+	 * @param value
+	 *            value as string, arrays comma separated
+	 */
+	public void set(String key, String value) {
+		Field f;
+		try {
+			f = Config.class.getField(key);
+		} catch (NoSuchFieldException e) {
+			throw new IllegalArgumentException("Unknown parameter: " + key);
+		}
+		if (Modifier.isStatic(f.getModifiers()))
+			throw new IllegalArgumentException("Unknown parameter: " + key);
+		try {
+			Class<?> t = f.getType();
+			if (t == int.class)
+				f.setInt(this, Integer.parseInt(value));
+			else if (t == long.class)
+				f.setLong(this, Long.parseLong(value));
+			else if (t == double.class)
+				f.setDouble(this, Double.parseDouble(value));
+			else if (t == boolean.class) {
+				if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false"))
+					throw new IllegalArgumentException("Malformed value for " + key + ": " + value);
+				f.setBoolean(this, value.equalsIgnoreCase("true"));
+			}
+			else if (t == int[].class)
+				f.set(this, parseIntArray(value));
+			else
+				f.set(this, value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed value for " + key + ": " + value);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot set " + key);
+		}
+	}
+
+	private static int[] parseIntArray(String value) {
+		if (value.isEmpty())
+			return new int[0];
+		String parts[] = value.split(",");
+		int a[] = new int[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			a[i] = Integer.parseInt(parts[i].trim());
+		return a;
+	}
+
+	/**
+	 * Checks ranges of all parameters
+	 *
+	 * @throws IllegalArgumentException
+	 *             describing the first invalid parameter
+	 */
+	public void validate() {
+		check(numSnakes >= 1, "numSnakes must be at least 1");
+		check(numNibbles >= 0, "numNibbles must not be negative");
+		check(maxNibbles >= numNibbles, "maxNibbles must be at least numNibbles");
+		check(worldWidth >= 200 && worldHeight >= 200, "worldWidth and worldHeight must be at least 200");
+		check(updatePeriod >= 0, "updatePeriod must not be negative");
+		check(fovDivisions >= 1, "fovDivisions must be at least 1");
+		check(maximumSightDistance > 0, "maximumSightDistance must be positive");
+		for (int s : hiddenLayers)
+			check(s >= 1, "hiddenLayers sizes must be at least 1");
+		check(optimizer.equals("ga") || optimizer.equals("es"), "optimizer must be ga or es");
+		check(mutationScale >= 0, "mutationScale must not be negative");
+		check(generationSeconds > 0, "generationSeconds must be positive");
+		check(targetDiversity >= 0 && targetDiversity <= .5, "targetDiversity must be between 0 and 0.5");
+		check(minSnakes >= 1 && maxSnakes >= minSnakes, "minSnakes must be at least 1 and maxSnakes at least minSnakes");
+		check(eventLogQueueSize >= 1, "eventLogQueueSize must be at least 1");
+		check(Activation.byName(activation) != null, "activation must be exact, lut or rational");
+		check(pruneThreshold >= 0 && pruneThreshold <= 128, "pruneThreshold must be between 0 and 128");
+		check(sparsityThreshold >= 0 && sparsityThreshold <= 1, "sparsityThreshold must be between 0 and 1");
+		check(compileAfterTicks >= 0, "compileAfterTicks must not be negative");
+		check(scenarios >= 0, "scenarios must not be negative");
+		check(scenarioSubset >= 1, "scenarioSubset must be at least 1");
+		check(scenarioTicks >= 1, "scenarioTicks must be at least 1");
+		check(curriculumGenerations > 0, "curriculumGenerations must be positive");
+		check(httpPort >= 0 && httpPort <= 65535, "httpPort must be between 0 and 65535");
+		check(flightEvents.equals("auto") || flightEvents.equals("on") || flightEvents.equals("off"), "flightEvents must be auto, on or off");
+		check(maxTicks >= 0, "maxTicks must not be negative");
+		check(controlPort >= 0 && controlPort <= 65535, "controlPort must be between 0 and 65535");
+		check(exportFormat.equals("png") || exportFormat.equals("mjpeg") || exportFormat.equals("y4m"), "exportFormat must be png, mjpeg or y4m");
+		check(exportSource.equals("best") || exportSource.equals("replay"), "exportSource must be best or replay");
+		check(exportPeriod >= 1, "exportPeriod must be at least 1");
+		check(exportThreads >= 1 && exportQueue >= 1, "exportThreads and exportQueue must be at least 1");
+		check(arenaCellSize >= 10, "arenaCellSize must be at least 10");
+		check(threads >= 0, "threads must not be negative");
+		check(novelty >= 0 && novelty <= 1, "novelty must be between 0 and 1");
+		check(noveltyNeighbors >= 1, "noveltyNeighbors must be at least 1");
+		check(noveltyArchiveSize >= 1, "noveltyArchiveSize must be at least 1");
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition)
+			throw new IllegalArgumentException(message);
+	}
+
+	/**
+	 * Size of the first stage: distance per field of view division and side
+	 * for each of the 3 thing types
+	 */
+	public int getFirstStageSize() {
+		return fovDivisions * 2 * 3;
+	}
+
+	/**
+	 * Complete layer sizes of the network, e.g. {48,16,16,2}
+	 */
+	public int[] getStageSizes() {
+		int s[] = new int[hiddenLayers.length + 2];
+		s[0] = getFirstStageSize();
+		for (int i = 0; i < hiddenLayers.length; i++)
+			s[i + 1] = hiddenLayers[i];
+		s[s.length - 1] = 2;
+		return s;
+	}
+
+	public String toString() {
+		String k = "";
+		for (Field f : Config.class.getFields()) {
+			if (Modifier.isStatic(f.getModifiers()))
+				continue;
+			try {
+				Object v = f.get(this);
+				k += f.getName() + "=" + (v instanceof int[] ? java.util.Arrays.toString((int[]) v).replaceAll("[\\[\\] ]", "") : v) + "\n";
+			} catch (IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+		return k;
+	}
+}
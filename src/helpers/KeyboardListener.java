@@ -4,21 +4,68 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 
 public class KeyboardListener implements KeyListener {
+	/**
+	 * Turns key presses into commands for the simulation thread. Held keys
+	 * repeat through the key repeat of the system.
+	 * space = watch best, f = fast forward replay, r = rewind replay,
+	 * a = pause, b = resume, c = show stats, d = hide stats,
+	 * k = checkpoint, 1 .. 9 = ticks per period, h = stop drawing, w = draw
+	 */
+	private final CommandQueue commands;
+
+	public KeyboardListener(CommandQueue commands) {
+		this.commands = commands;
+	}
 
-	private int code = 0;
 	@Override
 	public void keyPressed(KeyEvent e) {
-		code = e.getKeyCode();
+		int code = e.getKeyCode();
+		if (code >= KeyEvent.VK_1 && code <= KeyEvent.VK_9) {
+			commands.offer(new CommandQueue.Command(CommandQueue.SPEED, code - KeyEvent.VK_0, null, "keyboard"));
+			return;
+		}
+		int type;
+		switch (code) {
+		case KeyEvent.VK_SPACE:
+			type = CommandQueue.WATCH;
+			break;
+		case KeyEvent.VK_F:
+			type = CommandQueue.FORWARD;
+			break;
+		case KeyEvent.VK_R:
+			type = CommandQueue.REWIND;
+			break;
+		case KeyEvent.VK_A:
+			type = CommandQueue.PAUSE;
+			break;
+		case KeyEvent.VK_B:
+			type = CommandQueue.RESUME;
+			break;
+		case KeyEvent.VK_C:
+			type = CommandQueue.STATS;
+			break;
+		case KeyEvent.VK_D:
+			type = CommandQueue.HIDE_STATS;
+			break;
+		case KeyEvent.VK_K:
+			type = CommandQueue.CHECKPOINT;
+			break;
+		case KeyEvent.VK_H:
+			type = CommandQueue.HEADLESS;
+			break;
+		case KeyEvent.VK_W:
+			type = CommandQueue.WINDOW;
+			break;
+		default:
+			return;
+		}
+		commands.offer(new CommandQueue.Command(type, 0, null, "keyboard"));
 	}
 	@Override
 	public void keyReleased(KeyEvent e) {
-		code = 0;
 	}
 	@Override
 	public void keyTyped(KeyEvent arg0) {
-	
-	}
-	public int getKey() {
-		return code;
+
 	}
 }
@@ -0,0 +1,53 @@
+package main;
+
+import helpers.CommandQueue;
+import helpers.Config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+public class ControlClient {
+	/**
+	 * Sends one command to the control socket of a running simulation on
+	 * this machine, for example: ControlClient --controlPort=7000 speed 4
+	 * The port is read from the flags or snake.properties like for the run.
+	 */
+	public static void main(String[] args) {
+		ArrayList<String> flags = new ArrayList<String>();
+		ArrayList<String> words = new ArrayList<String>();
+		for (String a : args)
+			(a.startsWith("--") ? flags : words).add(a);
+		String command = String.join(" ", words);
+		Config config;
+		try {
+			config = Config.load(flags.toArray(new String[0]));
+			CommandQueue.parse(command, "cli"); // fail before connecting
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (config.controlPort == 0) {
+			System.err.println("No control port, set --controlPort=<port>");
+			System.exit(1);
+		}
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), config.controlPort);
+				PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+			out.println(command);
+			String reply = in.readLine();
+			System.out.println(reply);
+			if (reply == null || !reply.equals("ok"))
+				System.exit(1);
+		} catch (IOException e) {
+			System.err.println("Cannot reach the simulation: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
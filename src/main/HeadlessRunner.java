@@ -0,0 +1,121 @@
+package main;
+
+import gameEngine.FrameExporter;
+import gameEngine.Simulation;
+import helpers.CommandQueue;
+import helpers.Config;
+import statistics.Dashboard;
+
+import java.io.File;
+import java.io.IOException;
+
+public class HeadlessRunner {
+	/**
+	 * Runs the simulation without a window as fast as possible, for training
+	 * nodes. Same flags as MainWindow, monitor with --httpPort=<port>,
+	 * record progress videos with --exportPath=<file or directory>, stop
+	 * after --maxTicks=<ticks>, control with --controlPort=<port> or
+	 * --stdinCommands=true (see CommandQueue). Does not load java.awt unless
+	 * frames are exported.
+	 */
+	public static void main(String[] args) {
+		Config config;
+		try {
+			config = Config.load(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid configuration: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		Simulation simulation = new Simulation(config);
+		if (config.httpPort > 0) {
+			try {
+				new Dashboard(simulation, config.httpPort, config.httpRemote);
+			} catch (IOException e) {
+				System.err.println("Cannot start dashboard: " + e.getMessage());
+				System.exit(1);
+			}
+		}
+		if (!config.exportPath.isEmpty())
+			startExport(simulation, config);
+		CommandQueue commands = new CommandQueue();
+		openCommandSources(commands, config);
+		boolean paused = false;
+		while (config.maxTicks == 0 || simulation.ticks < config.maxTicks) {
+			CommandQueue.Command c;
+			while ((c = commands.poll()) != null)
+				paused = handle(c, simulation, paused);
+			if (paused) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					break;
+				}
+				continue;
+			}
+			simulation.step(config.worldWidth, config.worldHeight);
+		}
+		simulation.close();
+		System.exit(0);
+	}
+
+	/**
+	 * Standard input and the control socket, as configured. Checkpoint files
+	 * named in commands must be in the directory of checkpointPath
+	 */
+	static void openCommandSources(CommandQueue commands, Config config) {
+		commands.checkpointDirectory = new File(config.checkpointPath).getAbsoluteFile().getParentFile().toPath();
+		if (config.stdinCommands)
+			commands.readFrom(System.in, "stdin");
+		if (config.controlPort > 0) {
+			try {
+				commands.listen(config.controlPort);
+			} catch (IOException e) {
+				System.err.println("Cannot open control socket: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Commands without a window: pause, resume, stats and checkpoint
+	 *
+	 * @return whether the simulation is paused
+	 */
+	private static boolean handle(CommandQueue.Command c, Simulation simulation, boolean paused) {
+		switch (c.type) {
+		case CommandQueue.PAUSE:
+			return true;
+		case CommandQueue.RESUME:
+			return false;
+		case CommandQueue.STATS:
+			System.out.printf("t=%d g=%.1f best=%.1f max=%.1f snakes=%d mutation=%.4f%n", simulation.ticks, simulation.currentGeneration,
+					simulation.bestscore, simulation.currentMaxFitness, simulation.snakes.size(), simulation.mutationrate);
+			return paused;
+		case CommandQueue.CHECKPOINT:
+			simulation.checkpoint(c.argument != null ? c.argument : simulation.config.checkpointPath);
+			return paused;
+		default:
+			System.err.println("'" + c + "' needs the window");
+			return paused;
+		}
+	}
+
+	/**
+	 * Kept apart from main, FrameExporter is the only class of a headless
+	 * run that draws with java.awt
+	 */
+	private static void startExport(Simulation simulation, Config config) {
+		System.setProperty("java.awt.headless", "true");
+		try {
+			FrameExporter exporter = new FrameExporter(config);
+			exporter.attach(simulation, config.exportSource.equals("replay"));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				exporter.close();
+				System.err.println("Frames written: " + exporter.framesWritten + ", dropped: " + exporter.framesDropped);
+			}));
+		} catch (IOException e) {
+			System.err.println("Cannot start frame export: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+}
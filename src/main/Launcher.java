@@ -0,0 +1,42 @@
+package main;
+
+public class Launcher {
+	/**
+	 * Single entry point for the jar: "window", "headless", "sweep" or
+	 * "control" as the first argument, the remaining ones are passed on. Without a mode the
+	 * window opens when there is a display, otherwise the simulation runs
+	 * headless. The mode is chosen before any java.awt or javax.swing class
+	 * is loaded, so short headless jobs do not pay for them at startup.
+	 */
+	public static void main(String[] args) throws Exception {
+		String mode = args.length > 0 && !args[0].startsWith("--") ? args[0] : null;
+		String rest[] = mode == null ? args : java.util.Arrays.copyOfRange(args, 1, args.length);
+		if (mode == null)
+			mode = hasDisplay() ? "window" : "headless";
+		if (mode.equals("window"))
+			MainWindow.main(rest);
+		else if (mode.equals("headless"))
+			HeadlessRunner.main(rest);
+		else if (mode.equals("sweep"))
+			SweepRunner.main(rest);
+		else if (mode.equals("control"))
+			ControlClient.main(rest);
+		else {
+			System.err.println("Usage: Launcher [window|headless|sweep|control] [--key=value ...]");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Guess without asking AWT: headless when requested, or on Linux and
+	 * other Unixes without an X11 or Wayland display
+	 */
+	static boolean hasDisplay() {
+		if (Boolean.getBoolean("java.awt.headless"))
+			return false;
+		String os = System.getProperty("os.name", "").toLowerCase();
+		if (os.startsWith("windows") || os.startsWith("mac"))
+			return true;
+		return System.getenv("DISPLAY") != null || System.getenv("WAYLAND_DISPLAY") != null;
+	}
+}
@@ -1,7 +1,14 @@
 package main;
 
 import gameEngine.GameLoop;
+import helpers.CommandQueue;
+import helpers.Config;
 import helpers.KeyboardListener;
+import statistics.Dashboard;
+
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
 
 import javax.swing.JFrame;
 
@@ -10,19 +17,41 @@ public class MainWindow extends JFrame {
 	 * main function of the whole simulation
 	 */
 	public static void main(String[] args) {
-		new MainWindow();
+		Config config;
+		try {
+			config = Config.load(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid configuration: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		new MainWindow(config);
 	}
 	/**
 	 * Simple JFrame as user interface
 	 */
-	public MainWindow() {
+	public MainWindow(Config config) {
 		setDefaultCloseOperation(EXIT_ON_CLOSE);
 		setSize( 1000, 600);
 		setExtendedState(MAXIMIZED_BOTH);
 		setTitle("Neural Net Snake Genetic Algorithm");
-		KeyboardListener keyb = new KeyboardListener();
-		addKeyListener(keyb);
-		add(new GameLoop(keyb));
+		CommandQueue commands = new CommandQueue();
+		addKeyListener(new KeyboardListener(commands));
+		HeadlessRunner.openCommandSources(commands, config);
+		GameLoop loop = new GameLoop(commands, config);
+		add(loop);
+		addWindowListener(new WindowAdapter() {
+			public void windowClosing(WindowEvent e) {
+				loop.close(); // before EXIT_ON_CLOSE exits
+			}
+		});
+		if (config.httpPort > 0) {
+			try {
+				new Dashboard(loop.simulation, config.httpPort, config.httpRemote);
+			} catch (IOException e) {
+				System.err.println("Cannot start dashboard: " + e.getMessage());
+			}
+		}
 		setVisible(true);
 	}
 
@@ -0,0 +1,237 @@
+package main;
+
+import gameEngine.EpisodeExecutor;
+import gameEngine.Simulation;
+import helpers.Config;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+public class SweepRunner {
+	/**
+	 * Runs many headless simulations with different parameters in parallel and
+	 * writes one CSV row per run and generation.
+	 *
+	 * The sweep file is a properties file. Keys of Config list their candidate
+	 * values separated by '|', e.g. numSnakes=8|16|32 or
+	 * hiddenLayers=16,16|24,24. Keys starting with "sweep." control the sweep:
+	 * mode (grid or random), runs (random mode), generations, maxTicks,
+	 * threads, seed, output, executor (platform or virtual, see
+	 * EpisodeExecutor) and timeout (seconds per run, 0 for none).
+	 */
+	public int generations = 20;
+	public long maxTicks = 10000000;
+	public int threads = Runtime.getRuntime().availableProcessors();
+	public long seed = 1;
+	public String output = "sweep.csv";
+	public String mode = "grid";
+	public int runs = 16;
+	public String executor = EpisodeExecutor.PLATFORM;
+	public double timeout = 0;
+
+	private TreeMap<String, String[]> parameters = new TreeMap<String, String[]>();
+	private BufferedWriter out;
+	private int configsMade = 0;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 1) {
+			System.err.println("Usage: SweepRunner <sweep.properties>");
+			System.exit(1);
+		}
+		Properties p = new Properties();
+		try (InputStream in = new FileInputStream(args[0])) {
+			p.load(in);
+		}
+		SweepRunner sweep = new SweepRunner(p);
+		ArrayList<Config> configs;
+		try {
+			configs = sweep.makeConfigs();
+		} catch (IllegalArgumentException e) {
+			System.err.println("Invalid sweep: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		sweep.run(configs);
+	}
+
+	/**
+	 * C'tor
+	 *
+	 * @param p
+	 *            sweep description, see class comment
+	 */
+	public SweepRunner(Properties p) {
+		for (String key : p.stringPropertyNames()) {
+			String value = p.getProperty(key).trim();
+			if (key.equals("sweep.generations"))
+				generations = Integer.parseInt(value);
+			else if (key.equals("sweep.maxTicks"))
+				maxTicks = Long.parseLong(value);
+			else if (key.equals("sweep.threads"))
+				threads = Integer.parseInt(value);
+			else if (key.equals("sweep.seed"))
+				seed = Long.parseLong(value);
+			else if (key.equals("sweep.output"))
+				output = value;
+			else if (key.equals("sweep.mode"))
+				mode = value;
+			else if (key.equals("sweep.runs"))
+				runs = Integer.parseInt(value);
+			else if (key.equals("sweep.executor"))
+				executor = value;
+			else if (key.equals("sweep.timeout"))
+				timeout = Double.parseDouble(value);
+			else if (key.startsWith("sweep."))
+				throw new IllegalArgumentException("Unknown sweep setting: " + key);
+			else
+				parameters.put(key, value.split("\\|"));
+		}
+		if (!executor.equals(EpisodeExecutor.PLATFORM) && !executor.equals(EpisodeExecutor.VIRTUAL))
+			throw new IllegalArgumentException("sweep.executor must be platform or virtual");
+	}
+
+	/**
+	 * Expands the parameter lists into one validated configuration per run,
+	 * either the full grid or random samples of it. Each run gets its own seed.
+	 *
+	 * @return configurations to run
+	 */
+	public ArrayList<Config> makeConfigs() {
+		ArrayList<Config> configs = new ArrayList<Config>();
+		String keys[] = parameters.keySet().toArray(new String[0]);
+		Random random = new Random(seed);
+		if (mode.equals("grid")) {
+			int total = 1;
+			for (String k : keys)
+				total *= parameters.get(k).length;
+			for (int n = 0; n < total; n++) {
+				int choice[] = new int[keys.length];
+				int rest = n;
+				for (int i = keys.length - 1; i >= 0; i--) {
+					choice[i] = rest % parameters.get(keys[i]).length;
+					rest /= parameters.get(keys[i]).length;
+				}
+				configs.add(makeConfig(keys, choice, random.nextLong()));
+			}
+		} else if (mode.equals("random")) {
+			for (int n = 0; n < runs; n++) {
+				int choice[] = new int[keys.length];
+				for (int i = 0; i < keys.length; i++)
+					choice[i] = random.nextInt(parameters.get(keys[i]).length);
+				configs.add(makeConfig(keys, choice, random.nextLong()));
+			}
+		} else {
+			throw new IllegalArgumentException("sweep.mode must be grid or random");
+		}
+		return configs;
+	}
+
+	private Config makeConfig(String keys[], int choice[], long runSeed) {
+		Config c = new Config();
+		c.seed = runSeed;
+		for (int i = 0; i < keys.length; i++)
+			c.set(keys[i], parameters.get(keys[i])[choice[i]].trim());
+		if (!c.eventLog.isEmpty())
+			c.eventLog += "." + configsMade; // one log per run
+		configsMade++;
+		c.validate();
+		return c;
+	}
+
+	/**
+	 * Runs all configurations as episodes of one scope, rows are written as
+	 * soon as a generation is complete
+	 *
+	 * @param configs
+	 *            one configuration per run
+	 */
+	public void run(ArrayList<Config> configs) throws IOException, InterruptedException {
+		out = new BufferedWriter(new FileWriter(output));
+		String keys[] = parameters.keySet().toArray(new String[0]);
+		String header = "run,seed";
+		for (String k : keys)
+			header += "," + k;
+		header += ",generation,ticks,bestFitness,maxFitness,meanFitness,mutationRate,ticksPerSecond";
+		writeRow(header);
+		EpisodeExecutor episodes = new EpisodeExecutor(executor, threads);
+		ArrayList<EpisodeExecutor.Episode> started = new ArrayList<EpisodeExecutor.Episode>();
+		try (EpisodeExecutor.Scope scope = episodes.open((long) (timeout * 1e9))) {
+			for (int i = 0; i < configs.size(); i++) {
+				Config c = configs.get(i);
+				started.add(scope.fork(() -> new Simulation(c), sim -> (int) sim.currentGeneration >= generations || sim.ticks >= maxTicks,
+						new Rows(i, c, keys)));
+			}
+			scope.join();
+		}
+		episodes.close();
+		for (int i = 0; i < started.size(); i++) {
+			EpisodeExecutor.Episode e = started.get(i);
+			if (e.state == EpisodeExecutor.Episode.FAILED)
+				System.err.println("Run " + i + " failed: " + e.failure);
+			else if (e.state == EpisodeExecutor.Episode.TIMED_OUT)
+				System.err.println("Run " + i + " timed out");
+		}
+		out.close();
+	}
+
+	/**
+	 * Writes a row whenever a run completes a generation
+	 */
+	private class Rows implements Consumer<Simulation> {
+		private String prefix;
+		private int generation = 0;
+		private long startNanos = System.nanoTime();
+		private long generationTicks = 0;
+
+		Rows(int run, Config c, String keys[]) {
+			prefix = run + "," + c.seed;
+			for (String k : keys)
+				prefix += "," + csvValue(c, k);
+		}
+
+		public void accept(Simulation sim) {
+			if ((int) sim.currentGeneration > generation) {
+				generation = (int) sim.currentGeneration;
+				long now = System.nanoTime();
+				double tps = (sim.ticks - generationTicks) * 1e9 / Math.max(1, now - startNanos);
+				writeRow(prefix + "," + generation + "," + sim.ticks + "," + sim.bestscore + "," + sim.currentMaxFitness + ","
+						+ sim.getMeanFitness() + "," + sim.mutationrate + "," + (float) tps);
+				startNanos = now;
+				generationTicks = sim.ticks;
+			}
+		}
+	}
+
+	private static String csvValue(Config c, String key) {
+		try {
+			Object v = Config.class.getField(key).get(c);
+			if (v instanceof int[]) {
+				String k = "";
+				for (int s : (int[]) v)
+					k += (k.isEmpty() ? "" : " ") + s;
+				return k;
+			}
+			return String.valueOf(v);
+		} catch (ReflectiveOperationException e) {
+			return "";
+		}
+	}
+
+	private synchronized void writeRow(String row) {
+		try {
+			out.write(row);
+			out.newLine();
+			out.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package neuralNetwork;
+
+public abstract class Activation {
+	/**
+	 * Implementations of the sigmoid nonlinearity of the stages,
+	 * signalMultiplier / (1 + exp(-x / 2)). The output only drives the clamped
+	 * steering of the snakes, so modest precision is enough. Max. absolute
+	 * errors relative to the output range (0 .. 1, before signalMultiplier),
+	 * see benchmarks.ActivationBenchmark:
+	 * 
+	 * exact: Math.exp, reference
+	 * lut: 1024 entry table over -32 .. 32 with linear interpolation, < 1.3e-5
+	 * rational: branch free [7/6] Pade approximant of tanh, < 5e-5
+	 */
+	public static final Activation exact = new Activation() {
+		public double apply(double x) {
+			return exact(x);
+		}
+
+		public String getMethodName() {
+			return "exact";
+		}
+	};
+	public static final Activation lut = new Activation() {
+		public double apply(double x) {
+			return lookupTable(x);
+		}
+
+		public String getMethodName() {
+			return "lookupTable";
+		}
+	};
+	public static final Activation rational = new Activation() {
+		public double apply(double x) {
+			return rational(x);
+		}
+
+		public String getMethodName() {
+			return "rational";
+		}
+	};
+
+	private static final double lutRange = 32;
+	private static final int lutSize = 1024;
+	private static final double lutScale = lutSize / (2 * lutRange);
+	private static final double table[] = new double[lutSize + 2]; // last one guards x = lutRange
+	static {
+		for (int i = 0; i < table.length; i++)
+			table[i] = Stage.sigmoid(Math.min(i, lutSize) / lutScale - lutRange);
+	}
+	private static final double rationalLimit = 4.97; // approximant is closest to 1 there
+
+	/**
+	 * @param x
+	 *            weighted sum of a neuron
+	 * @return activation in the range 0 .. signalMultiplier
+	 */
+	public abstract double apply(double x);
+
+	/**
+	 * Name of the static (D)D method of this class with the same function,
+	 * called by compiled networks
+	 */
+	public abstract String getMethodName();
+
+	public static double exact(double x) {
+		return Stage.sigmoid(x);
+	}
+
+	public static double lookupTable(double x) {
+		double p = (Math.max(-lutRange, Math.min(lutRange, x)) + lutRange) * lutScale;
+		int i = (int) p;
+		double a = table[i];
+		return a + (p - i) * (table[i + 1] - a);
+	}
+
+	/**
+	 * sigmoid(x) = (1 + tanh(x / 4)) / 2, tanh approximated by a rational
+	 * function. Clamping uses min/max, no branches
+	 */
+	public static double rational(double x) {
+		double y = Math.max(-rationalLimit, Math.min(rationalLimit, x * .25));
+		double y2 = y * y;
+		double tanh = y * (135135 + y2 * (17325 + y2 * (378 + y2))) / (135135 + y2 * (62370 + y2 * (3150 + y2 * 28)));
+		return Stage.signalMultiplier * .5 * (1 + tanh);
+	}
+
+	/**
+	 * @param name
+	 *            exact, lut or rational
+	 * @return the activation, null for unknown names
+	 */
+	public static Activation byName(String name) {
+		if (name.equals("exact"))
+			return exact;
+		if (name.equals("lut"))
+			return lut;
+		if (name.equals("rational"))
+			return rational;
+		return null;
+	}
+}
@@ -0,0 +1,332 @@
+package neuralNetwork;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class NetworkCompiler {
+	/**
+	 * Generates a class per network with the weights inlined as constants and
+	 * the loops unrolled into straight-line code. Terms with a zero weight are
+	 * left out, which gives the same result since they only add zero. The
+	 * class is defined as a hidden class, so it is unloaded together with the
+	 * network.
+	 *
+	 * The class file is written by hand, all methods without branches, so no
+	 * stack map frames are needed. The rows of each stage are split into
+	 * static block methods that calc(double[], double[]) calls in turn, each
+	 * below HotSpot's HugeMethodLimit: the JIT leaves larger methods
+	 * interpreted, which is slower than the interpreted network. Hidden stage
+	 * values are kept in arrays of the instance, so an evaluator is not
+	 * thread safe, like the network itself.
+	 */
+	public static final int maxMethodLength = 8000;
+
+	/**
+	 * Compiles the current coefficients of a network
+	 *
+	 * @param net
+	 *            network to compile, later changes of its coefficients are
+	 *            not reflected
+	 * @return evaluator, or null when a single row is too large for a method
+	 */
+	public static NetworkEvaluator compile(NeuralNet net) {
+		byte classFile[] = generate(net);
+		if (classFile == null)
+			return null;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+			return (NetworkEvaluator) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+		} catch (Throwable e) {
+			throw new IllegalStateException("Cannot define compiled network", e);
+		}
+	}
+
+	/**
+	 * Constant pool with deduplication
+	 */
+	private static class ConstantPool {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		HashMap<String, Integer> entries = new HashMap<String, Integer>();
+		int count = 1;
+
+		int add(String key, int size, byte entry[]) {
+			Integer idx = entries.get(key);
+			if (idx != null)
+				return idx;
+			bytes.write(entry, 0, entry.length);
+			entries.put(key, count);
+			count += size;
+			return count - size;
+		}
+
+		int utf8(String s) {
+			ByteArrayOutputStream b = new ByteArrayOutputStream();
+			try {
+				DataOutputStream d = new DataOutputStream(b);
+				d.writeByte(1);
+				d.writeUTF(s);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			return add("U" + s, 1, b.toByteArray());
+		}
+
+		int classRef(String name) {
+			int n = utf8(name);
+			return add("C" + name, 1, new byte[] { 7, (byte) (n >> 8), (byte) n });
+		}
+
+		int nameAndType(String name, String type) {
+			int n = utf8(name);
+			int t = utf8(type);
+			return add("N" + name + type, 1, new byte[] { 12, (byte) (n >> 8), (byte) n, (byte) (t >> 8), (byte) t });
+		}
+
+		int methodRef(String owner, String name, String type) {
+			int c = classRef(owner);
+			int nt = nameAndType(name, type);
+			return add("M" + owner + name + type, 1, new byte[] { 10, (byte) (c >> 8), (byte) c, (byte) (nt >> 8), (byte) nt });
+		}
+
+		int fieldRef(String owner, String name, String type) {
+			int c = classRef(owner);
+			int nt = nameAndType(name, type);
+			return add("F" + owner + name + type, 1, new byte[] { 9, (byte) (c >> 8), (byte) c, (byte) (nt >> 8), (byte) nt });
+		}
+
+		int doubleConstant(double v) {
+			long bits = Double.doubleToRawLongBits(v);
+			byte e[] = new byte[9];
+			e[0] = 6;
+			for (int i = 0; i < 8; i++)
+				e[1 + i] = (byte) (bits >> (56 - 8 * i));
+			return add("D" + bits, 2, e);
+		}
+	}
+
+	/**
+	 * Bytecode of one method
+	 */
+	private static class Code {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int maxLocals;
+		int maxStack;
+
+		Code(int maxLocals, int maxStack) {
+			this.maxLocals = maxLocals;
+			this.maxStack = maxStack;
+		}
+
+		void op(int... b) {
+			for (int x : b)
+				out.write(x);
+		}
+
+		void op2(int opcode, int index) {
+			op(opcode, (index >> 8) & 0xff, index & 0xff);
+		}
+
+		void pushInt(int v) {
+			if (v >= -128 && v <= 127)
+				op(0x10, v & 0xff); // bipush
+			else
+				op2(0x11, v); // sipush
+		}
+
+		void dload(int slot) {
+			if (slot < 256)
+				op(0x18, slot);
+			else
+				op(0xc4, 0x18, slot >> 8, slot & 0xff); // wide
+		}
+
+		void dstore(int slot) {
+			maxLocals = Math.max(maxLocals, slot + 2);
+			if (slot < 256)
+				op(0x39, slot);
+			else
+				op(0xc4, 0x39, slot >> 8, slot & 0xff); // wide
+		}
+
+		void append(Code code) {
+			byte b[] = code.out.toByteArray();
+			out.write(b, 0, b.length);
+			maxLocals = Math.max(maxLocals, code.maxLocals);
+		}
+
+		int length() {
+			return out.size();
+		}
+	}
+
+	/**
+	 * Start of a static block method block(double[] in, double[] out) of a
+	 * stage: copies the previous stage into locals from slot 2 on
+	 */
+	private static Code block(Stage stage) {
+		int n = stage.columns - 1;
+		Code code = new Code(2 + 2 * n, 8); // out array, index, sum, product operands
+		for (int j = 0; j < n; j++) {
+			code.op(0x2a); // aload_0
+			code.pushInt(j);
+			code.op(0x31); // daload
+			code.dstore(2 + 2 * j);
+		}
+		return code;
+	}
+
+	/**
+	 * Row i of a stage, out[i] = activation(sum of weights * in + bias)
+	 */
+	private static Code row(ConstantPool cp, Stage stage, int i, int activation) {
+		int n = stage.columns - 1;
+		Code code = new Code(0, 0);
+		code.op(0x2b); // aload_1
+		code.pushInt(i);
+		code.op(0x0e); // dconst_0
+		for (int j = 0; j < n; j++) {
+			byte c = stage.getCoeff(i, j);
+			if (c == 0)
+				continue;
+			code.pushInt(c);
+			code.op(0x87); // i2d
+			code.dload(2 + 2 * j);
+			code.op(0x6b); // dmul
+			code.op(0x63); // dadd
+		}
+		// constant bias:
+		code.op2(0x14, cp.doubleConstant(stage.getCoeff(i, n) * Stage.signalMultiplier)); // ldc2_w
+		code.op(0x63); // dadd
+		code.op2(0xb8, activation); // invokestatic
+		code.op(0x52); // dastore
+		return code;
+	}
+
+	private static void method(DataOutputStream out, int access, int name, int type, int codeName, Code code) throws IOException {
+		byte b[] = code.out.toByteArray();
+		out.writeShort(access);
+		out.writeShort(name);
+		out.writeShort(type);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(12 + b.length);
+		out.writeShort(code.maxStack);
+		out.writeShort(code.maxLocals);
+		out.writeInt(b.length);
+		out.write(b);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // code attributes
+	}
+
+	private static byte[] generate(NeuralNet net) {
+		String self = "neuralNetwork/CompiledNet";
+		ConstantPool cp = new ConstantPool();
+		int thisClass = cp.classRef(self);
+		int superClass = cp.classRef("java/lang/Object");
+		int iface = cp.classRef("neuralNetwork/NetworkEvaluator");
+		int objectInit = cp.methodRef("java/lang/Object", "<init>", "()V");
+		String activationName = net.stages[net.stages.length - 1].activation.getMethodName();
+		int activation = cp.methodRef("neuralNetwork/Activation", activationName, "(D)D");
+		int initName = cp.utf8("<init>");
+		int initType = cp.utf8("()V");
+		int calcName = cp.utf8("calc");
+		int calcType = cp.utf8("([D[D)V");
+		int codeName = cp.utf8("Code");
+		int arrayType = cp.utf8("[D");
+		int blockType = calcType;
+
+		Stage stages[] = net.stages;
+		// hidden stage values, field s for stage s:
+		int fieldName[] = new int[stages.length];
+		int field[] = new int[stages.length];
+		Code init = new Code(1, 2);
+		init.op(0x2a); // aload_0
+		init.op2(0xb7, objectInit); // invokespecial
+		for (int s = 1; s < stages.length - 1; s++) {
+			fieldName[s] = cp.utf8("stage" + s);
+			field[s] = cp.fieldRef(self, "stage" + s, "[D");
+			init.op(0x2a); // aload_0
+			init.pushInt(stages[s].rows);
+			init.op(0xbc, 7); // newarray double
+			init.op2(0xb5, field[s]); // putfield
+		}
+		init.op(0xb1); // return
+
+		// blocks of as many rows as fit, each called from calc:
+		Code calc = new Code(3, 2);
+		ArrayList<Code> blocks = new ArrayList<Code>();
+		for (int s = 1; s < stages.length; s++) {
+			Stage stage = stages[s];
+			Code block = null;
+			for (int i = 0; i < stage.rows; i++) {
+				Code row = row(cp, stage, i, activation);
+				if (block != null && block.length() + row.length() + 1 > maxMethodLength) {
+					block.op(0xb1); // return
+					block = null;
+				}
+				if (block != null) {
+					block.append(row);
+					continue;
+				}
+				block = block(stage);
+				block.append(row);
+				if (block.length() + 1 > maxMethodLength)
+					return null;
+				blocks.add(block);
+				if (s == 1)
+					calc.op(0x2b); // aload_1
+				else {
+					calc.op(0x2a); // aload_0
+					calc.op2(0xb4, field[s - 1]); // getfield
+				}
+				if (s == stages.length - 1)
+					calc.op(0x2c); // aload_2
+				else {
+					calc.op(0x2a); // aload_0
+					calc.op2(0xb4, field[s]); // getfield
+				}
+				calc.op2(0xb8, cp.methodRef(self, "block" + (blocks.size() - 1), "([D[D)V")); // invokestatic
+			}
+			block.op(0xb1); // return
+		}
+		calc.op(0xb1); // return
+		if (calc.length() > maxMethodLength || cp.count > 65535)
+			return null;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52); // Java 8 format, no stack map frames needed
+			out.writeShort(cp.count);
+			cp.bytes.writeTo(out);
+			out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(iface);
+			out.writeShort(Math.max(0, stages.length - 2)); // fields
+			for (int s = 1; s < stages.length - 1; s++) {
+				out.writeShort(0x0002 | 0x0010); // private final
+				out.writeShort(fieldName[s]);
+				out.writeShort(arrayType);
+				out.writeShort(0);
+			}
+			out.writeShort(2 + blocks.size()); // methods
+			method(out, 0x0001, initName, initType, codeName, init);
+			method(out, 0x0001, calcName, calcType, codeName, calc);
+			for (int b = 0; b < blocks.size(); b++)
+				method(out, 0x0002 | 0x0008, cp.utf8("block" + b), blockType, codeName, blocks.get(b)); // private static
+			out.writeShort(0); // class attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,63 @@
+package neuralNetwork;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+
+public class NetworkDisplay {
+	/**
+	 * Draws the current state of a network to Graphics. Kept apart from
+	 * NeuralNet, so that headless runs, which never draw, do not load AWT
+	 * classes with the network.
+	 *
+	 * @param net	network to draw
+	 * @param g		Graphics to draw to
+	 * @param alpha	Transparency value, range 0 .. 1
+	 * @param w		Width of the screen
+	 * @param h		Height of the screen
+	 */
+	public static void display(NeuralNet net, Graphics g, float alpha, double w, double h) {
+		Stage stages[] = net.stages;
+		Graphics2D g2 = (Graphics2D) g;
+		int d = 20;
+
+		// synapses:
+		for (int s = 1; s < stages.length; s++) {
+			int x1 = (s) * (int) (w / (stages.length + 1));
+			int x2 = (s + 1) * (int) (w / (stages.length + 1));
+
+			for (int i = 0; i < stages[s].rows; i++) {
+				for (int j = 0; j < stages[s].columns - 1; j++) {
+					int c = stages[s].getCoeff(i, j);
+					if (Math.abs(c) < 48)
+						continue;
+					g2.setStroke(new BasicStroke(Math.abs(c) * 3 / 129));
+
+					int y1 = (j + 1) * (int) (h / (stages[s - 1].output.length + 1));
+					int y2 = (i + 1) * (int) (h / (stages[s].output.length + 1));
+					float b = (float) (stages[s - 1].output[j] / Stage.signalMultiplier);
+					if (c < 0)
+						g.setColor(new Color(b, 0, 0));
+					else
+						g.setColor(new Color(0, b, 0));
+					g2.drawLine(x1, y1, x2, y2);
+				}
+			}
+		}
+
+		// neurons:
+		for (int s = 0; s < stages.length; s++) {
+			int x = (s + 1) * (int) (w / (stages.length + 1));
+			d = (int) (h / (stages[s].output.length + 7));
+			for (int i = 0; i < stages[s].output.length; i++) {
+				int y = (i + 1) * (int) (h / (stages[s].output.length + 1));
+
+				float output = (float) (stages[s].output[i] / Stage.signalMultiplier * .8 + .2);
+				g.setColor(new Color(Color.HSBtoRGB(.6f, 1, output)));
+				g.fillOval(x - d / 2, y - d / 2, d, d);
+			}
+		}
+
+	}
+}
@@ -0,0 +1,13 @@
+package neuralNetwork;
+
+public interface NetworkEvaluator {
+	/**
+	 * Specialized evaluation of one network, see NetworkCompiler
+	 *
+	 * @param input
+	 *            first stage values
+	 * @param output
+	 *            array receiving the last stage values
+	 */
+	public void calc(double input[], double output[]);
+}
@@ -1,12 +1,10 @@
 package neuralNetwork;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.nio.ByteBuffer;
 
 public class NeuralNet {
 	public Stage stages[];
+	public NetworkEvaluator compiled = null; // see compile()
 
 	/**
 	 * C'tor
@@ -33,6 +31,8 @@ public class NeuralNet {
 	public void loadCoeffs(byte coeffs[]) {
 		int idx = 0;
 		for (int s = 1; s < stages.length; s++) {
+			stages[s].unbind();
+			stages[s].sparseRows = null;
 			for (int i = 0; i < stages[s].coeffs.length; i++) {
 				for (int j = 0; j < stages[s].coeffs[0].length; j++) {
 					stages[s].coeffs[i][j] = coeffs[idx++];
@@ -41,6 +41,27 @@ public class NeuralNet {
 		}
 	}
 	
+	/**
+	 * Same like loadCoeffs(), but the stages read the weights in place from
+	 * the buffer, which must stay valid while the network is used
+	 * @param genome	buffer with the coefficients at index 0 onwards
+	 */
+	public void bind(ByteBuffer genome) {
+		int idx = 0;
+		for (int s = 1; s < stages.length; s++) {
+			stages[s].bind(genome, idx);
+			idx += stages[s].rows * stages[s].columns;
+		}
+	}
+
+	/**
+	 * Drops the binding to a genome that is released, see Stage.detach()
+	 */
+	public void detach() {
+		for (int s = 1; s < stages.length; s++)
+			stages[s].detach();
+	}
+
 	/**
 	 * Same like loadCoeffs(), but will fill the network symmetrically
 	 * Only use when all stage sizes are even
@@ -50,6 +71,8 @@ public class NeuralNet {
 	public void loadCoeffsSymmetrical(byte coeffs[]) {
 		int idx = 0;
 		for (int s = 1; s < stages.length; s++) {
+			stages[s].unbind();
+			stages[s].sparseRows = null;
 			if (stages[s].coeffs.length % 2 == 1) {
 				System.err.println("Symmetrical Net without even sized stages. Bad.");
 				return;
@@ -74,11 +97,63 @@ public class NeuralNet {
 		for (int i = 0; i < input.length; i++) {
 			stages[0].output[i] = input[i];
 		}
+		if (compiled != null) {
+			compiled.calc(input, stages[stages.length - 1].output);
+			return stages[stages.length - 1].output;
+		}
 		for (int i = 1; i < stages.length; i++) {
 			stages[i].calc();
 		}
 		return stages[stages.length - 1].output;
 	}
+	/**
+	 * Sets the nonlinearity of all stages, call before compile()
+	 * 
+	 * @param activation
+	 *            see Activation
+	 */
+	public void setActivation(Activation activation) {
+		for (Stage s : stages)
+			s.activation = activation;
+	}
+
+	/**
+	 * Magnitude pruning: weights with |c| < threshold are set to 0 and stages
+	 * with enough zero weights switch to the sparse calculation
+	 * 
+	 * @param threshold
+	 *            minimum magnitude of a weight to be kept, 0 keeps all
+	 * @param sparsityThreshold
+	 *            fraction of zero weights from which a stage is calculated
+	 *            sparse
+	 * @return number of pruned weights
+	 */
+	public int prune(int threshold, double sparsityThreshold) {
+		int pruned = 0;
+		for (int s = 1; s < stages.length; s++) {
+			pruned += stages[s].prune(threshold);
+			if (stages[s].getSparsity() >= sparsityThreshold)
+				stages[s].makeSparse();
+			else
+				stages[s].sparseRows = null;
+		}
+		return pruned;
+	}
+
+	/**
+	 * Replaces the interpreted calculation by a generated class with the
+	 * current coefficients inlined, see NetworkCompiler. Worth it for networks
+	 * that are evaluated very often. The outputs of the hidden stages are no
+	 * longer updated, so NetworkDisplay only shows input and output correctly.
+	 * Coefficients must not change afterwards.
+	 * 
+	 * @return true when the network was compiled
+	 */
+	public boolean compile() {
+		compiled = NetworkCompiler.compile(this);
+		return compiled != null;
+	}
+
 	/**
 	 * Calculates the need number of coefficients for given Neural Net architecture
 	 * Used for DNA-length 
@@ -110,55 +185,4 @@ public class NeuralNet {
 		}
 		return k;
 	}
-
-	/**
-	 * Draws the current state of the network to Graphics
-	 * 
-	 * @param g		Graphics to draw to
-	 * @param alpha	Transparency value, range 0 .. 1
-	 * @param w		Width of the screen
-	 * @param h		Height of the screen
-	 */
-	public void display(Graphics g, float alpha, double w, double h) {
-		Graphics2D g2 = (Graphics2D) g;
-		int d = 20;
-
-		// synapses:
-		for (int s = 1; s < stages.length; s++) {
-			int x1 = (s) * (int) (w / (stages.length + 1));
-			int x2 = (s + 1) * (int) (w / (stages.length + 1));
-
-			for (int i = 0; i < stages[s].coeffs.length; i++) {
-				for (int j = 0; j < stages[s].coeffs[0].length - 1; j++) {
-					int c = stages[s].coeffs[i][j];
-					if (Math.abs(c) < 48)
-						continue;
-					g2.setStroke(new BasicStroke(Math.abs(c) * 3 / 129));
-
-					int y1 = (j + 1) * (int) (h / (stages[s - 1].output.length + 1));
-					int y2 = (i + 1) * (int) (h / (stages[s].output.length + 1));
-					float b = (float) (stages[s - 1].output[j] / Stage.signalMultiplier);
-					if (c < 0)
-						g.setColor(new Color(b, 0, 0));
-					else
-						g.setColor(new Color(0, b, 0));
-					g2.drawLine(x1, y1, x2, y2);
-				}
-			}
-		}
-
-		// neurons:
-		for (int s = 0; s < stages.length; s++) {
-			int x = (s + 1) * (int) (w / (stages.length + 1));
-			d = (int) (h / (stages[s].output.length + 7));
-			for (int i = 0; i < stages[s].output.length; i++) {
-				int y = (i + 1) * (int) (h / (stages[s].output.length + 1));
-
-				float output = (float) (stages[s].output[i] / Stage.signalMultiplier * .8 + .2);
-				g.setColor(new Color(Color.HSBtoRGB(.6f, 1, output)));
-				g.fillOval(x - d / 2, y - d / 2, d, d);
-			}
-		}
-
-	}
 }
@@ -1,44 +1,198 @@
 package neuralNetwork;
 
+import java.nio.ByteBuffer;
+
 public class Stage {
 	
 	public static final double signalMultiplier = .1;
 	
 	public Stage prev;
 	public double output[];
-	public byte coeffs[][];
+	public byte coeffs[][]; // null while bound to a genome, see bind()
+	public final int rows, columns; // columns include the bias
+	// weights read in place, row-major, see bind():
+	public ByteBuffer weights = null;
+	public int weightsOffset = 0;
+	public Activation activation = Activation.exact;
+	// compressed sparse rows of the non-zero weights (bias excluded),
+	// null when the dense coeffs are used, see makeSparse():
+	public int sparseRows[] = null;
+	public int sparseColumns[];
+	public double sparseValues[];
 	
 	public Stage(Stage prev, int size){
 		this.prev = prev;
 		output = new double[size];
-		if (prev != null)
-			coeffs = new byte[size][prev.output.length+1];
-		else
-			coeffs = new byte[0][0];
+		rows = prev != null ? size : 0;
+		columns = prev != null ? prev.output.length+1 : 0;
+		coeffs = new byte[rows][columns];
+	}
+	/**
+	 * Reads the weights from the buffer instead of own coeffs, without
+	 * copying them
+	 * @param offset	index of the first weight, rows follow each other
+	 */
+	public void bind(ByteBuffer buffer, int offset){
+		weights = buffer;
+		weightsOffset = offset;
+		coeffs = null;
+		sparseRows = null;
+	}
+	/**
+	 * Copies bound weights into own coeffs, so they can be changed
+	 */
+	public void unbind(){
+		if (coeffs != null) return;
+		coeffs = new byte[rows][columns];
+		for (int i = 0; i < rows; i++)
+			weights.get(weightsOffset+i*columns, coeffs[i]);
+		weights = null;
+	}
+	/**
+	 * Drops the bound buffer without a copy, for a genome that is released.
+	 * The stage must not be calculated any more until it gets weights again
+	 */
+	public void detach(){
+		if (coeffs != null) return;
+		weights = null;
+		sparseRows = null;
+	}
+	public byte getCoeff(int i, int j){
+		return coeffs != null ? coeffs[i][j] : bound().get(weightsOffset+i*columns+j);
+	}
+	private ByteBuffer bound(){
+		if (weights == null)
+			throw new IllegalStateException("genome released");
+		return weights;
 	}
 	/**
 	 * calculates the outputs based on the input values
 	 */
 	public void calc(){
 		if (prev == null) return;
+		if (sparseRows != null){
+			calcSparse();
+			return;
+		}
+		if (coeffs == null){
+			calcBound();
+			return;
+		}
 		for (int i = 0; i < coeffs.length; i++){
 			double sum = 0;
 			for (int j = 0; j < coeffs[0].length-1; j++){
 				sum += coeffs[i][j]*prev.output[j];
 			}
 			sum += coeffs[i][coeffs[0].length-1]*signalMultiplier;  //constant bias
-			output[i] = sigmoid(sum);
+			output[i] = activation.apply(sum);
+		}
+	}
+	/**
+	 * Same like calc() with the weights read from the bound buffer
+	 */
+	private void calcBound(){
+		ByteBuffer weights = bound();
+		int n = columns-1;
+		for (int i = 0; i < rows; i++){
+			int row = weightsOffset+i*columns;
+			double sum = 0;
+			for (int j = 0; j < n; j++){
+				sum += weights.get(row+j)*prev.output[j];
+			}
+			sum += weights.get(row+n)*signalMultiplier;  //constant bias
+			output[i] = activation.apply(sum);
+		}
+	}
+	/**
+	 * Same like calc(), only visits the non-zero weights.
+	 * Gives identical results since the skipped terms are zero
+	 */
+	private void calcSparse(){
+		int bias = columns-1;
+		for (int i = 0; i < rows; i++){
+			double sum = 0;
+			for (int k = sparseRows[i]; k < sparseRows[i+1]; k++){
+				sum += sparseValues[k]*prev.output[sparseColumns[k]];
+			}
+			sum += getCoeff(i, bias)*signalMultiplier;  //constant bias
+			output[i] = activation.apply(sum);
+		}
+	}
+	/**
+	 * Builds the compressed sparse rows out of the current coeffs.
+	 * Call again after changing coeffs
+	 */
+	public void makeSparse(){
+		int n = rows > 0 ? columns-1 : 0;
+		int nonZero = 0;
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < n; j++)
+				if (getCoeff(i, j) != 0) nonZero++;
+		sparseRows = new int[rows+1];
+		sparseColumns = new int[nonZero];
+		sparseValues = new double[nonZero];
+		int k = 0;
+		for (int i = 0; i < rows; i++){
+			sparseRows[i] = k;
+			for (int j = 0; j < n; j++){
+				byte c = getCoeff(i, j);
+				if (c != 0){
+					sparseColumns[k] = j;
+					sparseValues[k++] = c;
+				}
+			}
+		}
+		sparseRows[rows] = k;
+	}
+	/**
+	 * Sets weights (bias excluded) with a magnitude below the threshold to 0.
+	 * Bound weights are copied first when there is something to prune
+	 * @return number of weights set to 0
+	 */
+	public int prune(int threshold){
+		if (coeffs == null){
+			if (!hasWeightBelow(threshold)) return 0;
+			unbind();
+		}
+		int pruned = 0;
+		for (int i = 0; i < coeffs.length; i++){
+			for (int j = 0; j < coeffs[0].length-1; j++){
+				if (coeffs[i][j] != 0 && Math.abs(coeffs[i][j]) < threshold){
+					coeffs[i][j] = 0;
+					pruned++;
+				}
+			}
 		}
+		return pruned;
+	}
+	private boolean hasWeightBelow(int threshold){
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < columns-1; j++){
+				byte c = getCoeff(i, j);
+				if (c != 0 && Math.abs(c) < threshold) return true;
+			}
+		return false;
+	}
+	/**
+	 * Fraction of weights (bias excluded) that are 0
+	 */
+	public double getSparsity(){
+		if (rows == 0 || columns < 2) return 0;
+		int zero = 0;
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < columns-1; j++)
+				if (getCoeff(i, j) == 0) zero++;
+		return zero/(double)(rows*(columns-1));
 	}
 	public static double sigmoid(double x) {
 		return signalMultiplier/(1+Math.exp(-x/2d));  //range: 0 .. multiplier
 	}
 	public String toString(){
 		String k = "[";
-		for (int i = 0; i< coeffs.length; i++){
+		for (int i = 0; i< rows; i++){
 			k += "[";
-			for (int j = 0; j < coeffs[0].length; j++){
-				k += Byte.toString(coeffs[i][j])+" ";
+			for (int j = 0; j < columns; j++){
+				k += Byte.toString(getCoeff(i, j))+" ";
 			}
 			k += "]\n ";
 		}
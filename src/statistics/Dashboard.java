@@ -0,0 +1,217 @@
+package statistics;
+
+import gameEngine.Simulation;
+import gameEngine.SimulationSnapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class Dashboard {
+	/**
+	 * Small embedded HTTP server for headless runs:
+	 * /metrics Prometheus text, /stats.json, /timeline.json?level=0..2 and
+	 * /events, a server-sent event stream of the best living snake.
+	 * Only published snapshots are read, the simulation thread is never
+	 * touched.
+	 */
+	public static final long eventPeriodMillis = 100;
+
+	private Simulation simulation;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * Starts the server and enables snapshot publishing of the simulation
+	 *
+	 * @param port
+	 *            port on the loopback interface
+	 * @param remote
+	 *            listen on all interfaces instead, for remote scraping
+	 */
+	public Dashboard(Simulation simulation, int port, boolean remote) throws IOException {
+		this.simulation = simulation;
+		simulation.publishSnapshots = true;
+		server = HttpServer.create(remote ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "dashboard");
+			t.setDaemon(true);
+			return t;
+		});
+		server.setExecutor(executor);
+		server.createContext("/metrics", e -> send(e, "text/plain; version=0.0.4", metrics()));
+		server.createContext("/stats.json", e -> send(e, "application/json", statsJson(simulation.snapshot)));
+		server.createContext("/timeline.json", this::timeline);
+		server.createContext("/events", this::events);
+		server.createContext("/", e -> send(e, "text/html", page));
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private static void send(HttpExchange e, String type, String body) throws IOException {
+		send(e, 200, type, body);
+	}
+
+	private static void send(HttpExchange e, int status, String type, String body) throws IOException {
+		byte b[] = body.getBytes(StandardCharsets.UTF_8);
+		e.getResponseHeaders().set("Content-Type", type);
+		e.sendResponseHeaders(status, b.length);
+		try (OutputStream out = e.getResponseBody()) {
+			out.write(b);
+		}
+	}
+
+	private String metrics() {
+		SimulationSnapshot s = simulation.snapshot;
+		if (s == null)
+			return "";
+		StringBuilder k = new StringBuilder();
+		metric(k, "snake_ticks_total", "counter", s.ticks);
+		metric(k, "snake_generation", "gauge", s.generation);
+		metric(k, "snake_best_score", "gauge", s.bestscore);
+		metric(k, "snake_max_fitness", "gauge", s.currentMaxFitness);
+		metric(k, "snake_mutation_rate", "gauge", s.mutationrate);
+		metric(k, "snake_ticks_per_second", "gauge", s.ticksPerSecond);
+		metric(k, "snake_population", "gauge", s.population);
+		metric(k, "snake_population_target", "gauge", s.populationTarget);
+		metric(k, "snake_genome_diversity", "gauge", s.diversity);
+		metric(k, "snake_evaluations_per_second", "gauge", s.evaluationsPerSecond);
+		metric(k, "snake_generation_seconds", "gauge", s.secondsPerGeneration);
+		metric(k, "snake_controller_decisions_total", "counter", s.controllerDecisions);
+		k.append("# TYPE snake_phase_seconds gauge\n");
+		k.append("snake_phase_seconds{phase=\"world\"} ").append(s.worldNanos / 1e9).append('\n');
+		k.append("snake_phase_seconds{phase=\"snakes\"} ").append(s.snakesNanos / 1e9).append('\n');
+		k.append("snake_phase_seconds{phase=\"reproduction\"} ").append(s.reproductionNanos / 1e9).append('\n');
+		return k.toString();
+	}
+
+	private static void metric(StringBuilder k, String name, String type, double value) {
+		k.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		k.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static String statsJson(SimulationSnapshot s) {
+		if (s == null)
+			return "{}";
+		StringBuilder k = new StringBuilder("{");
+		k.append("\"ticks\":").append(s.ticks);
+		k.append(",\"clock\":").append(s.clock);
+		k.append(",\"generation\":").append(s.generation);
+		k.append(",\"bestscore\":").append(s.bestscore);
+		k.append(",\"maxFitness\":").append(s.currentMaxFitness);
+		k.append(",\"mutationrate\":").append(s.mutationrate);
+		k.append(",\"ticksPerSecond\":").append(s.ticksPerSecond);
+		k.append(",\"population\":").append(s.population);
+		k.append(",\"controller\":{\"populationTarget\":").append(s.populationTarget);
+		k.append(",\"diversity\":").append(s.diversity);
+		k.append(",\"evaluationsPerSecond\":").append(s.evaluationsPerSecond);
+		k.append(",\"secondsPerGeneration\":").append(s.secondsPerGeneration);
+		k.append(",\"decisions\":").append(s.controllerDecisions).append('}');
+		k.append(",\"phaseNanos\":{\"world\":").append(s.worldNanos);
+		k.append(",\"snakes\":").append(s.snakesNanos);
+		k.append(",\"reproduction\":").append(s.reproductionNanos).append('}');
+		k.append('}');
+		return k.toString();
+	}
+
+	private static String bestSnakeJson(SimulationSnapshot s) {
+		StringBuilder k = new StringBuilder("{");
+		k.append("\"ticks\":").append(s.ticks);
+		k.append(",\"width\":").append(s.width).append(",\"height\":").append(s.height);
+		k.append(",\"snake\":").append(s.bestSnakeId);
+		k.append(",\"fitness\":").append(s.bestSnakeScore);
+		k.append(",\"hue\":").append(s.bestSnakeHue);
+		k.append(",\"segments\":");
+		array(k, s.bestSnakeSegments);
+		k.append(",\"nibbles\":");
+		array(k, s.nibbles);
+		k.append('}');
+		return k.toString();
+	}
+
+	private static void array(StringBuilder k, double a[]) {
+		k.append('[');
+		for (int i = 0; i < a.length; i++) {
+			if (i > 0)
+				k.append(',');
+			k.append((float) a[i]);
+		}
+		k.append(']');
+	}
+
+	private void timeline(HttpExchange e) throws IOException {
+		int level = StatsTimeline.SECONDS;
+		String q = e.getRequestURI().getQuery();
+		if (q != null && q.startsWith("level=")) {
+			try {
+				level = Integer.parseInt(q.substring(6).trim());
+			} catch (NumberFormatException ex) {
+				level = -1;
+			}
+			if (level < 0 || level > 2) {
+				send(e, 400, "text/plain", "level must be 0, 1 or 2\n");
+				return;
+			}
+		}
+		send(e, "application/json", timelineJson(level));
+	}
+
+	private String timelineJson(int level) {
+		StatsTimeline.Snapshot t = simulation.timeline.snapshot(level, 1000);
+		String names[] = new String[] { "max", "mean", "p50", "p90", "length", "tickRate" };
+		StringBuilder k = new StringBuilder("{");
+		for (int c = 0; c < StatsTimeline.CHANNELS; c++) {
+			if (c > 0)
+				k.append(',');
+			k.append('"').append(names[c]).append("\":");
+			array(k, t.values[c]);
+		}
+		k.append('}');
+		return k.toString();
+	}
+
+	/**
+	 * Server-sent events: the best living snake, whenever a new snapshot was
+	 * published
+	 */
+	private void events(HttpExchange e) throws IOException {
+		e.getResponseHeaders().set("Content-Type", "text/event-stream");
+		e.getResponseHeaders().set("Cache-Control", "no-cache");
+		e.sendResponseHeaders(200, 0);
+		SimulationSnapshot last = null;
+		try (OutputStream out = e.getResponseBody()) {
+			while (!Thread.currentThread().isInterrupted()) {
+				SimulationSnapshot s = simulation.snapshot;
+				if (s != null && s != last) {
+					out.write(("data: " + bestSnakeJson(s) + "\n\n").getBytes(StandardCharsets.UTF_8));
+					out.flush();
+					last = s;
+				}
+				Thread.sleep(eventPeriodMillis);
+			}
+		} catch (IOException | InterruptedException ex) {
+			// client gone or server stopped
+		}
+	}
+
+	private static final String page = "<!DOCTYPE html><html><head><title>Neural Net Snake</title></head>"
+			+ "<body style='background:#000;color:#888;font-family:Arial'><pre id='stats'></pre><canvas id='c'></canvas><script>"
+			+ "var c=document.getElementById('c'),g=c.getContext('2d');"
+			+ "new EventSource('/events').onmessage=function(m){var s=JSON.parse(m.data);c.width=s.width;c.height=s.height;"
+			+ "g.fillStyle='red';for(var i=0;i<s.nibbles.length;i+=2){g.beginPath();g.arc(s.nibbles[i],s.nibbles[i+1],20,0,7);g.fill();}"
+			+ "g.fillStyle='hsl('+s.hue*360+',100%,50%)';for(var i=0;i<s.segments.length;i+=3){g.beginPath();"
+			+ "g.arc(s.segments[i],s.segments[i+1],s.segments[i+2],0,7);g.fill();}};"
+			+ "setInterval(function(){fetch('/stats.json').then(r=>r.text()).then(t=>document.getElementById('stats').textContent=t)},1000);"
+			+ "</script></body></html>";
+}
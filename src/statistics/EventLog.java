@@ -0,0 +1,214 @@
+package statistics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class EventLog {
+	/**
+	 * Line delimited JSON stream of births, deaths, eaten nibbles and fitness
+	 * statistics. The simulation thread only puts small event records into a
+	 * bounded queue and never blocks: when the queue is full, events are
+	 * dropped and counted. A background thread formats the events and writes
+	 * them in batches through a FileChannel.
+	 */
+	public static final int BIRTH = 0;
+	public static final int DEATH = 1;
+	public static final int NIBBLE = 2;
+	public static final int STATS = 3;
+
+	public static final String causes[] = new String[] { "none", "wall", "self", "starvation", "snake" };
+
+	/**
+	 * Struct for one event, fields are used depending on the type
+	 */
+	private static class Event {
+		int type;
+		long clock;
+		long snake;
+		long genome;
+		int cause;
+		int count;
+		double a, b, c;
+	}
+
+	private ArrayBlockingQueue<Event> queue;
+	private FileChannel channel;
+	private Thread writer;
+	private Thread shutdownHook;
+	private volatile boolean running = true;
+	private long dropped = 0; // only touched by the simulation thread
+	private volatile long written = 0;
+
+	/**
+	 * Opens (truncates) the log file and starts the writer thread
+	 *
+	 * @param file
+	 *            path of the log
+	 * @param capacity
+	 *            maximum number of queued events
+	 */
+	public EventLog(String file, int capacity) throws IOException {
+		queue = new ArrayBlockingQueue<Event>(capacity);
+		channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeLoop();
+			}
+		}, "event-log-writer");
+		writer.setDaemon(true);
+		writer.start();
+		shutdownHook = new Thread(new Runnable() {
+			public void run() {
+				stop();
+			}
+		});
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	private void offer(Event e) {
+		if (!queue.offer(e))
+			dropped++;
+	}
+
+	public void birth(long clock, long snake, long genome) {
+		Event e = new Event();
+		e.type = BIRTH;
+		e.clock = clock;
+		e.snake = snake;
+		e.genome = genome;
+		offer(e);
+	}
+
+	/**
+	 * @param cause
+	 *            index into causes
+	 */
+	public void death(long clock, long snake, long genome, int cause, double score, double fitness, int length) {
+		Event e = new Event();
+		e.type = DEATH;
+		e.clock = clock;
+		e.snake = snake;
+		e.genome = genome;
+		e.cause = cause;
+		e.a = score;
+		e.b = fitness;
+		e.count = length;
+		offer(e);
+	}
+
+	public void nibble(long clock, long snake, int count, int value) {
+		Event e = new Event();
+		e.type = NIBBLE;
+		e.clock = clock;
+		e.snake = snake;
+		e.count = count;
+		e.a = value;
+		offer(e);
+	}
+
+	public void stats(long clock, double generation, double maxFitness, double bestFitness) {
+		Event e = new Event();
+		e.type = STATS;
+		e.clock = clock;
+		e.a = generation;
+		e.b = maxFitness;
+		e.c = bestFitness;
+		e.count = (int) Math.min(Integer.MAX_VALUE, dropped);
+		offer(e);
+	}
+
+	/**
+	 * Events dropped because the writer could not keep up
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	public long getWritten() {
+		return written;
+	}
+
+	private void format(StringBuilder k, Event e) {
+		k.append("{\"t\":").append(e.clock);
+		switch (e.type) {
+		case BIRTH:
+			k.append(",\"type\":\"birth\",\"snake\":").append(e.snake);
+			k.append(",\"genome\":\"").append(Long.toHexString(e.genome)).append('"');
+			break;
+		case DEATH:
+			k.append(",\"type\":\"death\",\"snake\":").append(e.snake);
+			k.append(",\"genome\":\"").append(Long.toHexString(e.genome)).append('"');
+			k.append(",\"cause\":\"").append(causes[e.cause]).append('"');
+			k.append(",\"score\":").append(e.a).append(",\"fitness\":").append(e.b);
+			k.append(",\"length\":").append(e.count);
+			break;
+		case NIBBLE:
+			k.append(",\"type\":\"nibble\",\"snake\":").append(e.snake);
+			k.append(",\"count\":").append(e.count).append(",\"value\":").append((int) e.a);
+			break;
+		case STATS:
+			k.append(",\"type\":\"stats\",\"generation\":").append(e.a);
+			k.append(",\"maxFitness\":").append(e.b).append(",\"bestFitness\":").append(e.c);
+			k.append(",\"dropped\":").append(e.count);
+			break;
+		}
+		k.append("}\n");
+	}
+
+	private void writeLoop() {
+		ArrayList<Event> batch = new ArrayList<Event>(4096);
+		StringBuilder k = new StringBuilder(1 << 16);
+		try {
+			while (running || !queue.isEmpty()) {
+				Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, 4095);
+				for (Event e : batch)
+					format(k, e);
+				ByteBuffer buf = ByteBuffer.wrap(k.toString().getBytes(StandardCharsets.UTF_8));
+				while (buf.hasRemaining())
+					channel.write(buf);
+				written += batch.size();
+				batch.clear();
+				k.setLength(0);
+			}
+		} catch (InterruptedException e) {
+			// closed
+		} catch (IOException e) {
+			System.err.println("Event log stopped: " + e.getMessage());
+			running = false;
+		}
+	}
+
+	private void stop() {
+		running = false;
+		try {
+			writer.join();
+			channel.close();
+		} catch (InterruptedException | IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes the remaining events and closes the file
+	 */
+	public void close() {
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// already shutting down, the hook closes the log
+			return;
+		}
+		stop();
+	}
+}
@@ -0,0 +1,121 @@
+package statistics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public class FlightEvents {
+	/**
+	 * Java Flight Recorder events of the simulation, recorded together with
+	 * the GC, CPU and lock events of the JVM. Emitted only while a recording
+	 * is running: the simulation checks isEnabled() or shouldCommit() before
+	 * filling in the fields, so with JFR off the event objects are eliminated
+	 * by escape analysis. Stack traces are off, the events are frequent.
+	 * Example: java -XX:StartFlightRecording=filename=run.jfr ...
+	 *
+	 * Loading the first event class costs a few hundred ms of startup, so the
+	 * simulation only touches them once JFR is up, see Config.flightEvents.
+	 */
+	public static final String category = "Snake Simulation";
+
+	/**
+	 * Whether JFR is up, from the command line or a recording started later
+	 * with jcmd. Only loads the FlightRecorder class, not the JFR runtime.
+	 */
+	public static boolean recorderStarted() {
+		return FlightRecorder.isInitialized();
+	}
+
+	@Name("snake.Tick")
+	@Label("Tick")
+	@Category(category)
+	@Description("One Simulation.step, from moving the nibbles to removing faded snakes")
+	@StackTrace(false)
+	public static class Tick extends Event {
+		@Label("Tick")
+		public long tick;
+		@Label("Snakes")
+		public int snakes;
+		@Label("Deaths")
+		public int deaths;
+		@Label("Births")
+		public int births;
+	}
+
+	@Name("snake.Reproduction")
+	@Label("Selection and Reproduction")
+	@Category(category)
+	@Description("Replacing the dead snakes of a tick: selection, crossover, mutation and the new snakes")
+	@StackTrace(false)
+	public static class Reproduction extends Event {
+		@Label("Tick")
+		public long tick;
+		@Label("Births")
+		public int births;
+		@Label("Mutation Rate")
+		public double mutationRate;
+	}
+
+	@Name("snake.Generation")
+	@Label("Generation")
+	@Category(category)
+	@Description("The generation counter passed a whole number")
+	@StackTrace(false)
+	public static class Generation extends Event {
+		@Label("Generation")
+		public int generation;
+		@Label("Tick")
+		public long tick;
+		@Label("Population")
+		public int population;
+		@Label("Max Fitness")
+		public double maxFitness;
+		@Label("Mean Fitness")
+		public double meanFitness;
+		@Label("Best Fitness")
+		@Description("Best fitness of the whole run")
+		public double bestFitness;
+		@Label("Mutation Rate")
+		public double mutationRate;
+	}
+
+	@Name("snake.Birth")
+	@Label("Snake Birth")
+	@Category(category)
+	@StackTrace(false)
+	public static class Birth extends Event {
+		@Label("Snake")
+		public long snake;
+		@Label("Genome Hash")
+		public long genomeHash;
+		@Label("Genome Size")
+		@DataAmount
+		public int genomeBytes;
+	}
+
+	@Name("snake.Death")
+	@Label("Snake Death")
+	@Category(category)
+	@StackTrace(false)
+	public static class Death extends Event {
+		@Label("Snake")
+		public long snake;
+		@Label("Genome Hash")
+		public long genomeHash;
+		@Label("Cause")
+		public String cause;
+		@Label("Score")
+		public double score;
+		@Label("Fitness")
+		public double fitness;
+		@Label("Length")
+		public int length;
+		@Label("Ticks Alive")
+		public int ticksAlive;
+	}
+}
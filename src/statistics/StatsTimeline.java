@@ -0,0 +1,149 @@
+package statistics;
+
+import java.lang.invoke.VarHandle;
+
+public class StatsTimeline {
+	/**
+	 * Fitness statistics per interval in primitive ring buffers, replacing the
+	 * boxed fitness list. There are three resolutions: seconds, minutes and
+	 * hours, each level keeps a fixed number of entries so memory stays
+	 * bounded for long runs. Entries of the coarser levels aggregate 60
+	 * entries of the finer one (maximum of maxima, mean of the others).
+	 *
+	 * Only the simulation thread writes. Readers copy the newest entries into
+	 * a Snapshot without locking, a sequence counter per level tells them to
+	 * retry when the writer interfered.
+	 */
+	public static final int MAX = 0;
+	public static final int MEAN = 1;
+	public static final int P50 = 2;
+	public static final int P90 = 3;
+	public static final int LENGTH = 4;
+	public static final int TICKRATE = 5;
+	public static final int CHANNELS = 6;
+
+	public static final int SECONDS = 0;
+	public static final int MINUTES = 1;
+	public static final int HOURS = 2;
+
+	private static final int capacities[] = new int[] { 3600, 1440, 8760 };
+
+	private Level levels[] = new Level[capacities.length];
+
+	/**
+	 * One ring buffer plus the sums for the next coarser entry
+	 */
+	private static class Level {
+		final int capacity;
+		final double data[];
+		long count = 0; // entries ever written
+		volatile long sequence = 0; // odd while writing
+		final double sum[] = new double[CHANNELS];
+		int summed = 0;
+
+		Level(int capacity) {
+			this.capacity = capacity;
+			data = new double[capacity * CHANNELS];
+		}
+	}
+
+	/**
+	 * Copy of the newest entries of one level, oldest first
+	 */
+	public static class Snapshot {
+		public int size;
+		public double values[][] = new double[CHANNELS][];
+
+		public double get(int channel, int i) {
+			return values[channel][i];
+		}
+	}
+
+	public StatsTimeline() {
+		for (int i = 0; i < levels.length; i++)
+			levels[i] = new Level(capacities[i]);
+	}
+
+	/**
+	 * Adds an entry to the seconds level, single writer only
+	 *
+	 * @param entry
+	 *            values indexed by the channel constants
+	 */
+	public void record(double entry[]) {
+		push(0, entry);
+	}
+
+	private void push(int l, double entry[]) {
+		Level level = levels[l];
+		level.sequence++; // odd: writing
+		VarHandle.releaseFence();
+		int idx = (int) (level.count % level.capacity) * CHANNELS;
+		for (int c = 0; c < CHANNELS; c++)
+			level.data[idx + c] = entry[c];
+		level.count++;
+		VarHandle.releaseFence();
+		level.sequence++; // even: consistent
+
+		if (l + 1 >= levels.length)
+			return;
+		for (int c = 0; c < CHANNELS; c++) {
+			if (c == MAX)
+				level.sum[c] = level.summed == 0 ? entry[c] : Math.max(level.sum[c], entry[c]);
+			else
+				level.sum[c] += entry[c];
+		}
+		level.summed++;
+		if (level.summed == 60) {
+			double aggregate[] = new double[CHANNELS];
+			for (int c = 0; c < CHANNELS; c++)
+				aggregate[c] = c == MAX ? level.sum[c] : level.sum[c] / 60;
+			java.util.Arrays.fill(level.sum, 0);
+			level.summed = 0;
+			push(l + 1, aggregate);
+		}
+	}
+
+	/**
+	 * Copies the newest entries of a level without locking
+	 *
+	 * @param l
+	 *            SECONDS, MINUTES or HOURS
+	 * @param maxEntries
+	 *            maximum number of entries to copy
+	 * @return consistent snapshot
+	 */
+	public Snapshot snapshot(int l, int maxEntries) {
+		Level level = levels[l];
+		Snapshot s = new Snapshot();
+		while (true) {
+			long seq = level.sequence;
+			if ((seq & 1) != 0) {
+				Thread.onSpinWait();
+				continue;
+			}
+			VarHandle.acquireFence();
+			long count = level.count;
+			int n = (int) Math.max(0, Math.min(Math.min(count, level.capacity), maxEntries));
+			for (int c = 0; c < CHANNELS; c++)
+				if (s.values[c] == null || s.values[c].length != n)
+					s.values[c] = new double[n];
+			for (int i = 0; i < n; i++) {
+				int idx = (int) ((count - n + i) % level.capacity) * CHANNELS;
+				for (int c = 0; c < CHANNELS; c++)
+					s.values[c][i] = level.data[idx + c];
+			}
+			s.size = n;
+			VarHandle.acquireFence();
+			if (level.sequence == seq)
+				return s;
+		}
+	}
+
+	/**
+	 * Number of entries ever written to a level
+	 */
+	public long getCount(int l) {
+		return levels[l].count;
+	}
+}